@@ -0,0 +1,479 @@
+import java.io.*;
+import java.lang.management.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Measures the core CollectionManager operations against datasets made by
+// DatasetGenerator. Each benchmark is run for a number of warmup iterations and then
+// for a number of measured iterations, reporting the average time and the average
+// number of bytes allocated per operation. Results can be recorded to a CSV file and
+// later compared against it, so every performance change can be checked against a
+// recorded baseline.
+//
+// JMH is not used because it refuses benchmark classes in the default package, which
+// is where every class in this project lives.
+//
+// The readers-N benchmarks measure how read throughput scales with threads: N threads
+// of a fixed pool share the lookups against one ConcurrentCollectionManager, for N =
+// 1, 2, 4, ... up to the number of available processors. "--only readers" selects all
+// of them.
+//
+// Usage: java CollectionBenchmark [--sizes 1000,10000] [--shapes sorted,random]
+//            [--only name,...] [--warmup 3] [--iterations 5]
+//            [--record results.csv] [--baseline results.csv]
+public class CollectionBenchmark {
+    private static final long SEED = 42;
+
+    // Benchmarks whose operations must not allocate once warmed up. A run fails if any
+    // of them averages a byte or more per operation.
+    private static final Set<String> ALLOCATION_FREE = Set.of("containsFields");
+
+    // Holds the inputs shared by every benchmark for one dataset
+    private static class Fixture {
+        public final List<GolfBall> golfBalls;
+        public final List<GolfBall> probes;
+        public final List<GolfBall> misses;
+        public final int[] probeColors;
+        public final int[] probeYears;
+        public final CharBuffer[] probeDescriptions;
+        public final String text;
+        public final Path file;
+        public final CollectionManager collection;
+        public final ConcurrentCollectionManager shared;
+        public final CollectionManager filtered;
+        public final CollectionManager cached;
+        public final CollectionManager others;
+        public final CompactCollectionManager compact;
+
+        // Behavior:
+        //   - Creates the inputs for the given dataset
+        // Exceptions:
+        //   - Throws an IOException if the dataset text cannot be generated
+        // Parameters:
+        //   - String shape - the shape of the dataset
+        //   - int size - the number of golf balls in the dataset
+        public Fixture(String shape, int size) throws IOException {
+            this.golfBalls = DatasetGenerator.generate(shape, size, SEED);
+            this.probes = new ArrayList<>(golfBalls);
+            Collections.shuffle(probes, new Random(SEED));
+            this.probeColors = new int[size];
+            this.probeYears = new int[size];
+            this.probeDescriptions = new CharBuffer[size];
+            for (int i = 0; i < size; i++) {
+                GolfBall golfBall = probes.get(i);
+                probeColors[i] = golfBall.getColorIndex();
+                probeYears[i] = golfBall.getYear();
+                probeDescriptions[i] = CharBuffer.wrap(golfBall.getDescription());
+            }
+            this.misses = new ArrayList<>(size);
+            for (GolfBall golfBall : probes) {
+                misses.add(new GolfBall(golfBall.getColor(), golfBall.getYear(),
+                                        golfBall.getDescription() + " (missing)"));
+            }
+            StringBuilder text = new StringBuilder();
+            DatasetGenerator.write(shape, size, SEED, text);
+            this.text = text.toString();
+            this.file = Files.createTempFile("benchmark", ".txt");
+            file.toFile().deleteOnExit();
+            Files.writeString(file, text);
+            this.collection = new CollectionManager();
+            collection.addAll(golfBalls);
+            this.shared = new ConcurrentCollectionManager(collection);
+            this.others = new CollectionManager();
+            others.addAll(misses);
+            this.filtered = collection.copy();
+            filtered.enableBloomFilter(0.01);
+            this.cached = collection.copy();
+            cached.enableQueryCache(16);
+            this.compact = new CompactCollectionManager();
+            compact.addAll(golfBalls);
+        }
+    }
+
+    // Represents one benchmarked operation
+    private interface Operation {
+        // Behavior:
+        //   - Runs the operation once over the given fixture
+        // Returns:
+        //   - A value derived from the work done, so that it cannot be optimized away
+        // Parameters:
+        //   - Fixture fixture - the inputs to run against
+        Object run(Fixture fixture) throws Exception;
+    }
+
+    // Describes one benchmark: its name, the operation, and how many operations one run
+    // counts as
+    private static class Benchmark {
+        public final String name;
+        public final String unit;
+        public final Operation operation;
+        public final boolean perGolfBall;
+        public final int threads;
+
+        // Behavior:
+        //   - Creates a benchmark with the given name and operation, run on the calling
+        //     thread
+        // Parameters:
+        //   - String name - the name of the benchmark
+        //   - String unit - what one operation is, for the report
+        //   - boolean perGolfBall - true if one run counts one operation per golf ball
+        //   - Operation operation - the operation to run
+        public Benchmark(String name, String unit, boolean perGolfBall, Operation operation) {
+            this(name, unit, perGolfBall, 0, operation);
+        }
+
+        // Behavior:
+        //   - Creates a benchmark with the given name and operation
+        // Parameters:
+        //   - String name - the name of the benchmark
+        //   - String unit - what one operation is, for the report
+        //   - boolean perGolfBall - true if one run counts one operation per golf ball
+        //   - int threads - the number of threads the operation runs on, or 0 if it only
+        //     runs on the calling thread
+        //   - Operation operation - the operation to run
+        public Benchmark(String name, String unit, boolean perGolfBall, int threads,
+                         Operation operation) {
+            this.name = name;
+            this.unit = unit;
+            this.perGolfBall = perGolfBall;
+            this.threads = threads;
+            this.operation = operation;
+        }
+    }
+
+    private static final List<Benchmark> BENCHMARKS = withReaders(List.of(
+        new Benchmark("add", "add", true, fixture -> {
+            CollectionManager collection = new CollectionManager();
+            for (GolfBall golfBall : fixture.golfBalls) {
+                collection.add(golfBall);
+            }
+            return collection;
+        }),
+        new Benchmark("addAll", "golf ball", true, fixture -> {
+            CollectionManager collection = new CollectionManager();
+            collection.addAll(fixture.golfBalls);
+            return collection;
+        }),
+        new Benchmark("contains", "lookup", true, fixture -> {
+            int found = 0;
+            for (GolfBall golfBall : fixture.probes) {
+                if (fixture.collection.contains(golfBall)) {
+                    found++;
+                }
+            }
+            return found;
+        }),
+        new Benchmark("sharedContains", "lookup", true, fixture -> {
+            return countFound(fixture.shared, fixture.probes);
+        }),
+        new Benchmark("containsFields", "lookup", true, fixture -> {
+            int found = 0;
+            for (int i = 0; i < fixture.probeColors.length; i++) {
+                if (fixture.collection.contains(fixture.probeColors[i], fixture.probeYears[i],
+                                                fixture.probeDescriptions[i])) {
+                    found++;
+                }
+            }
+            return found;
+        }),
+        new Benchmark("containsParsed", "lookup", true, fixture -> {
+            int found = 0;
+            for (int i = 0; i < fixture.probeColors.length; i++) {
+                GolfBall golfBall = new GolfBall(GolfBall.getColorName(fixture.probeColors[i]),
+                                                 fixture.probeYears[i],
+                                                 fixture.probeDescriptions[i].toString());
+                if (fixture.collection.contains(golfBall)) {
+                    found++;
+                }
+            }
+            return found;
+        }),
+        new Benchmark("containsMiss", "lookup", true, fixture -> {
+            return countFound(fixture.collection, fixture.misses);
+        }),
+        new Benchmark("bloomContainsMiss", "lookup", true, fixture -> {
+            return countFound(fixture.filtered, fixture.misses);
+        }),
+        new Benchmark("bloomContains", "lookup", true, fixture -> {
+            return countFound(fixture.filtered, fixture.probes);
+        }),
+        new Benchmark("compactAdd", "add", true, fixture -> {
+            CompactCollectionManager collection = new CompactCollectionManager();
+            for (GolfBall golfBall : fixture.golfBalls) {
+                collection.add(golfBall);
+            }
+            return collection;
+        }),
+        new Benchmark("compactContains", "lookup", true, fixture -> {
+            int found = 0;
+            for (GolfBall golfBall : fixture.probes) {
+                if (fixture.compact.contains(golfBall)) {
+                    found++;
+                }
+            }
+            return found;
+        }),
+        new Benchmark("filter", "call", false, fixture -> {
+            return fixture.collection.filter("blue");
+        }),
+        new Benchmark("union", "golf ball", true, fixture -> {
+            return fixture.collection.union(fixture.others);
+        }),
+        new Benchmark("addEach", "golf ball", true, fixture -> {
+            CollectionManager collection = fixture.collection.copy();
+            for (GolfBall golfBall : fixture.others) {
+                if (!collection.contains(golfBall)) {
+                    collection.add(golfBall);
+                }
+            }
+            return collection;
+        }),
+        new Benchmark("cachedFilter", "call", false, fixture -> {
+            return fixture.cached.filter("blue");
+        }),
+        new Benchmark("save", "call", false, fixture -> {
+            PrintStream output = new PrintStream(OutputStream.nullOutputStream());
+            fixture.collection.save(output);
+            return output;
+        }),
+        new Benchmark("scanner", "call", false, fixture -> {
+            return new CollectionManager(new Scanner(fixture.text));
+        }),
+        new Benchmark("load", "call", false, fixture -> {
+            CollectionManager collection = new CollectionManager();
+            try (GolfBallReader reader = GolfBallReader.open(fixture.file)) {
+                collection.load(reader);
+            }
+            return collection;
+        }),
+        new Benchmark("parallelLoad", "call", false, fixture -> {
+            CollectionManager collection = new CollectionManager();
+            collection.loadParallel(fixture.file);
+            return collection;
+        }),
+        new Benchmark("toString", "call", false, fixture -> {
+            return fixture.collection.toString();
+        })
+    ));
+
+    private static volatile Object sink;
+
+    // Behavior:
+    //   - Runs the benchmarks selected by the given arguments and prints a report,
+    //     exiting with status 1 if an allocation-free benchmark allocated
+    // Exceptions:
+    //   - Throws an Exception if a benchmark fails or a results file cannot be used
+    // Parameters:
+    //   - String[] args - the command line arguments
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "1000,10000,100000")
+                .split(",")).mapToInt(Integer::parseInt).toArray();
+        List<String> shapes = Arrays.asList(options.getOrDefault("shapes",
+                String.join(",", DatasetGenerator.SHAPES)).split(","));
+        Set<String> only = options.containsKey("only")
+                ? new HashSet<>(Arrays.asList(options.get("only").split(","))) : null;
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "3"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "5"));
+        Map<String, double[]> baseline = options.containsKey("baseline")
+                ? readResults(Paths.get(options.get("baseline"))) : Map.of();
+
+        boolean allocated = false;
+        double singleReader = 0;
+        List<String> results = new ArrayList<>();
+        results.add("benchmark,shape,size,ns_per_op,bytes_per_op");
+        System.out.printf("%-17s %-8s %9s %14s %14s  %s%n", "benchmark", "shape", "size",
+                          "ns/op", "bytes/op", "unit");
+        for (String shape : shapes) {
+            for (int size : sizes) {
+                Fixture fixture = new Fixture(shape, size);
+                for (Benchmark benchmark : BENCHMARKS) {
+                    if (only != null && !only.contains(benchmark.name)
+                            && !only.contains(benchmark.name.split("-")[0])) {
+                        continue;
+                    }
+                    double[] result = measure(benchmark, fixture, warmup, iterations);
+                    String key = benchmark.name + "," + shape + "," + size;
+                    results.add(String.format(Locale.ROOT, "%s,%.2f,%.1f", key, result[0],
+                                              result[1]));
+                    String comparison = "";
+                    if (baseline.containsKey(key)) {
+                        comparison = String.format("  (%.2fx time vs baseline)",
+                                                   result[0] / baseline.get(key)[0]);
+                    }
+                    if (benchmark.threads == 1) {
+                        singleReader = result[0];
+                    }
+                    if (benchmark.threads > 0) {
+                        comparison += String.format("  (%,.0f lookups/s", 1e9 / result[0]);
+                        if (singleReader > 0) {
+                            comparison += String.format(", %.2fx vs 1 thread",
+                                                        singleReader / result[0]);
+                        }
+                        comparison += ")";
+                    }
+                    if (ALLOCATION_FREE.contains(benchmark.name) && result[1] >= 1) {
+                        comparison += "  (expected no allocation)";
+                        allocated = true;
+                    }
+                    System.out.printf("%-17s %-8s %9d %,14.1f %,14.1f  %s%s%n", benchmark.name,
+                                      shape, size, result[0], result[1], benchmark.unit,
+                                      comparison);
+                }
+            }
+        }
+        if (options.containsKey("record")) {
+            Files.write(Paths.get(options.get("record")), results);
+        }
+        if (allocated) {
+            System.exit(1);
+        }
+    }
+
+    // Returns:
+    //   - The given benchmarks followed by a readers-N benchmark for each thread count:
+    //     1, 2, 4, ... up to and including the number of available processors
+    // Parameters:
+    //   - List<Benchmark> benchmarks - the benchmarks that run on the calling thread
+    private static List<Benchmark> withReaders(List<Benchmark> benchmarks) {
+        List<Benchmark> all = new ArrayList<>(benchmarks);
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads < processors; threads *= 2) {
+            all.add(readers(threads));
+        }
+        all.add(readers(processors));
+        return List.copyOf(all);
+    }
+
+    // Returns:
+    //   - A benchmark that splits the probe lookups against the shared collection
+    //     evenly between the given number of threads of a fixed pool, so that its time
+    //     per lookup is the inverse of the combined read throughput. Allocation is only
+    //     counted for the calling thread.
+    // Parameters:
+    //   - int threads - the number of threads reading at once
+    private static Benchmark readers(int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        return new Benchmark("readers-" + threads, "lookup", true, threads, fixture -> {
+            List<Callable<Integer>> slices = new ArrayList<>(threads);
+            int size = fixture.probes.size();
+            for (int i = 0; i < threads; i++) {
+                List<GolfBall> slice = fixture.probes.subList(i * size / threads,
+                                                              (i + 1) * size / threads);
+                slices.add(() -> countFound(fixture.shared, slice));
+            }
+            int found = 0;
+            for (Future<Integer> result : pool.invokeAll(slices)) {
+                found += result.get();
+            }
+            return found;
+        });
+    }
+
+    // Returns:
+    //   - The average nanoseconds and bytes allocated per operation of the given
+    //     benchmark over the measured iterations
+    // Exceptions:
+    //   - Throws an Exception if the benchmark fails
+    // Parameters:
+    //   - Benchmark benchmark - the benchmark to run
+    //   - Fixture fixture - the inputs to run against
+    //   - int warmup - the number of unmeasured iterations to run first
+    //   - int iterations - the number of measured iterations
+    private static double[] measure(Benchmark benchmark, Fixture fixture, int warmup,
+                                    int iterations) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            sink = benchmark.operation.run(fixture);
+        }
+        long operations = (long) iterations
+                * (benchmark.perGolfBall ? Math.max(1, fixture.golfBalls.size()) : 1);
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = benchmark.operation.run(fixture);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        return new double[] {(double) elapsed / operations, (double) allocated / operations};
+    }
+
+    // Returns:
+    //   - The number of the given golf balls found in the given collection
+    // Parameters:
+    //   - CollectionManager collection - the collection to search
+    //   - List<GolfBall> golfBalls - the golf balls to look for
+    private static int countFound(CollectionManager collection, List<GolfBall> golfBalls) {
+        int found = 0;
+        for (GolfBall golfBall : golfBalls) {
+            if (collection.contains(golfBall)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    // Returns:
+    //   - The number of the given golf balls found in the given shared collection
+    // Parameters:
+    //   - ConcurrentCollectionManager collection - the collection to search
+    //   - List<GolfBall> golfBalls - the golf balls to look for
+    private static int countFound(ConcurrentCollectionManager collection,
+                                  List<GolfBall> golfBalls) {
+        int found = 0;
+        for (GolfBall golfBall : golfBalls) {
+            if (collection.contains(golfBall)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    // Returns:
+    //   - The number of bytes allocated by the current thread so far, or 0 if the JVM
+    //     does not report it
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    // Returns:
+    //   - The options in the given arguments, keyed by name without the leading dashes
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if an option has no value
+    // Parameters:
+    //   - String[] args - the command line arguments
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --name value, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    // Returns:
+    //   - The results recorded in the given CSV file, keyed by benchmark, shape, and size
+    // Exceptions:
+    //   - Throws an IOException if the file cannot be read
+    // Parameters:
+    //   - Path path - the results file written by an earlier run with --record
+    private static Map<String, double[]> readResults(Path path) throws IOException {
+        Map<String, double[]> results = new HashMap<>();
+        List<String> lines = Files.readAllLines(path);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(",");
+            results.put(fields[0] + "," + fields[1] + "," + fields[2], new double[] {
+                Double.parseDouble(fields[3]), Double.parseDouble(fields[4])
+            });
+        }
+        return results;
+    }
+}
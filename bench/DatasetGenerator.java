@@ -0,0 +1,181 @@
+import java.io.*;
+import java.util.*;
+
+// Generates deterministic collection files in the three-line color/year/description
+// format for benchmarking. The same shape, count, and seed always produce the same
+// file. Every generated golf ball is distinct, and descriptions are drawn from a small
+// fixed vocabulary so they repeat the way they do in real collections.
+//
+// Shapes:
+//   - sorted   - golf balls in sorted order
+//   - reverse  - golf balls in reverse sorted order
+//   - random   - golf balls spread evenly across colors, in random order
+//   - skewed   - nine in ten golf balls are white, in random order
+public class DatasetGenerator {
+    public static final List<String> SHAPES = List.of("sorted", "reverse", "random", "skewed");
+
+    private static final String[] DESCRIPTIONS = {
+        "AJGA golf ball", "Rolex golf ball", "Spongebob golf ball", "WJGA State Championship",
+        "black and white soccer ball", "country flags", "driving range", "half blue half white",
+        "hot pink golf ball", "light pink golf ball", "logo ball", "practice ball",
+        "red and white soccer ball", "souvenir ball", "tournament ball", "water hazard find"
+    };
+
+    static {
+        Arrays.sort(DESCRIPTIONS);
+    }
+
+    // Behavior:
+    //   - Writes a generated dataset to a file or to standard output
+    //     Usage: java DatasetGenerator <shape> <count> [seed] [output file]
+    // Exceptions:
+    //   - Throws an IOException if the output cannot be written
+    // Parameters:
+    //   - String[] args - the command line arguments
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Usage: java DatasetGenerator <shape> <count> [seed] [output file]");
+            System.err.println("  shapes: " + String.join(", ", SHAPES));
+            System.exit(1);
+        }
+        String shape = args[0];
+        int count = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        Writer output = args.length > 3
+                ? new BufferedWriter(new FileWriter(args[3]), 1 << 16)
+                : new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        try (output) {
+            write(shape, count, seed, output);
+        }
+    }
+
+    // Behavior:
+    //   - Writes the golf balls of the given dataset to the given output, three lines
+    //     per golf ball
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the shape is unknown or the count is
+    //     negative
+    //   - Throws an IOException if the output cannot be written
+    // Parameters:
+    //   - String shape - the shape of the dataset
+    //   - int count - the number of golf balls to generate
+    //   - long seed - the seed for the random shapes
+    //   - Appendable output - the output destination
+    public static void write(String shape, int count, long seed, Appendable output)
+            throws IOException {
+        int[] order = order(shape, count, seed);
+        int[] colorStarts = colorStarts(shape, count);
+        for (int i = 0; i < count; i++) {
+            GolfBall golfBall = golfBall(position(shape, order, count, i), colorStarts);
+            output.append(golfBall.getColor()).append('\n');
+            output.append(Integer.toString(golfBall.getYear())).append('\n');
+            output.append(golfBall.getDescription()).append('\n');
+        }
+    }
+
+    // Returns:
+    //   - The golf balls of the given dataset, in the order they would be written
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the shape is unknown or the count is
+    //     negative
+    // Parameters:
+    //   - String shape - the shape of the dataset
+    //   - int count - the number of golf balls to generate
+    //   - long seed - the seed for the random shapes
+    public static List<GolfBall> generate(String shape, int count, long seed) {
+        int[] order = order(shape, count, seed);
+        int[] colorStarts = colorStarts(shape, count);
+        List<GolfBall> golfBalls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            golfBalls.add(golfBall(position(shape, order, count, i), colorStarts));
+        }
+        return golfBalls;
+    }
+
+    // Returns:
+    //   - A random permutation of the sorted positions for the random shapes, or null
+    //     for the sorted and reverse shapes, whose order is computed directly
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the shape is unknown or the count is
+    //     negative
+    // Parameters:
+    //   - String shape - the shape of the dataset
+    //   - int count - the number of golf balls to generate
+    //   - long seed - the seed for the permutation
+    private static int[] order(String shape, int count, long seed) {
+        if (!SHAPES.contains(shape)) {
+            throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative");
+        }
+        if (shape.equals("sorted") || shape.equals("reverse")) {
+            return null;
+        }
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    // Returns:
+    //   - The sorted position of the golf ball written at the given index
+    // Parameters:
+    //   - String shape - the shape of the dataset
+    //   - int[] order - the permutation for the random shapes, or null
+    //   - int count - the number of golf balls to generate
+    //   - int i - the index at which the golf ball is written
+    private static int position(String shape, int[] order, int count, int i) {
+        if (order != null) {
+            return order[i];
+        }
+        return shape.equals("reverse") ? count - 1 - i : i;
+    }
+
+    // Returns:
+    //   - The sorted position at which each color's golf balls start, with one extra
+    //     entry holding the total count
+    // Parameters:
+    //   - String shape - the shape of the dataset
+    //   - int count - the number of golf balls to generate
+    private static int[] colorStarts(String shape, int count) {
+        int colors = GolfBall.getColorCount();
+        int[] starts = new int[colors + 1];
+        if (shape.equals("skewed")) {
+            int white = (int) (count * 9L / 10);
+            for (int c = 1; c <= colors; c++) {
+                starts[c] = white + (int) ((long) (count - white) * (c - 1) / (colors - 1));
+            }
+        } else {
+            for (int c = 0; c <= colors; c++) {
+                starts[c] = (int) ((long) count * c / colors);
+            }
+        }
+        return starts;
+    }
+
+    // Returns:
+    //   - The golf ball at the given sorted position. Within a color, positions map to
+    //     years and then descriptions in increasing order, so increasing positions give
+    //     increasing golf balls.
+    // Parameters:
+    //   - int index - the sorted position of the golf ball
+    //   - int[] colorStarts - the sorted position at which each color starts
+    private static GolfBall golfBall(int index, int[] colorStarts) {
+        int color = 0;
+        while (colorStarts[color + 1] <= index) {
+            color++;
+        }
+        int offset = index - colorStarts[color];
+        return new GolfBall(GolfBall.getColorName(color), 1900 + offset / DESCRIPTIONS.length,
+                            DESCRIPTIONS[offset % DESCRIPTIONS.length]);
+    }
+}
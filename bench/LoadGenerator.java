@@ -0,0 +1,138 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Drives a running CollectionServer from several connections at once and reports the
+// throughput and latency percentiles of its requests. Each connection sends one
+// request at a time and waits for the full response, so the latencies measured are
+// what a client sees. The mix is mostly contains lookups, with a share of adds and
+// filters, all drawn from a DatasetGenerator dataset.
+//
+// Usage: java LoadGenerator [--host localhost] [--port 7123] [--connections 8]
+//            [--requests 10000] [--adds 10] [--filters 1] [--size 100000]
+// where --requests is per connection and --adds and --filters are percentages.
+public class LoadGenerator {
+    private static final long SEED = 42;
+
+    // Behavior:
+    //   - Runs the load described by the given arguments and prints a report
+    // Exceptions:
+    //   - Throws an Exception if the server cannot be reached or answers with an error
+    // Parameters:
+    //   - String[] args - the command line arguments
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        String host = options.getOrDefault("host", "localhost");
+        int port = Integer.parseInt(options.getOrDefault("port",
+                String.valueOf(CollectionServer.DEFAULT_PORT)));
+        int connections = Integer.parseInt(options.getOrDefault("connections", "8"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "10000"));
+        int adds = Integer.parseInt(options.getOrDefault("adds", "10"));
+        int filters = Integer.parseInt(options.getOrDefault("filters", "1"));
+        List<GolfBall> golfBalls = DatasetGenerator.generate("random",
+                Integer.parseInt(options.getOrDefault("size", "100000")), SEED);
+
+        ExecutorService pool = Executors.newFixedThreadPool(connections);
+        List<Future<long[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            long seed = SEED + i;
+            results.add(pool.submit(() -> run(host, port, requests, adds, filters,
+                                              golfBalls, new Random(seed))));
+        }
+        long[] latencies = new long[connections * requests];
+        int count = 0;
+        for (Future<long[]> result : results) {
+            long[] connectionLatencies = result.get();
+            System.arraycopy(connectionLatencies, 0, latencies, count,
+                             connectionLatencies.length);
+            count += connectionLatencies.length;
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("%,d requests over %d connections in %.2f s: %,.0f requests/s%n",
+                          count, connections, elapsed / 1e9, count * 1e9 / elapsed);
+        System.out.printf("latency p50 %,d us  p99 %,d us  p99.9 %,d us  max %,d us%n",
+                          percentile(latencies, 0.50) / 1000,
+                          percentile(latencies, 0.99) / 1000,
+                          percentile(latencies, 0.999) / 1000,
+                          latencies[latencies.length - 1] / 1000);
+    }
+
+    // Behavior:
+    //   - Sends the given number of requests over one connection, one at a time
+    // Exceptions:
+    //   - Throws an IOException if the server cannot be reached or answers with an error
+    // Returns:
+    //   - The latency of each request, in nanoseconds
+    // Parameters:
+    //   - String host - the server's host
+    //   - int port - the server's port
+    //   - int requests - the number of requests to send
+    //   - int adds - the percentage of requests that are adds
+    //   - int filters - the percentage of requests that are filters
+    //   - List<GolfBall> golfBalls - the golf balls to draw requests from
+    //   - Random random - the source of randomness for this connection
+    private static long[] run(String host, int port, int requests, int adds, int filters,
+                              List<GolfBall> golfBalls, Random random) throws IOException {
+        long[] latencies = new long[requests];
+        try (Socket socket = new Socket(host, port);
+             BufferedReader input = new BufferedReader(new InputStreamReader(
+                     socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer output = new BufferedWriter(new OutputStreamWriter(
+                     socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            for (int i = 0; i < requests; i++) {
+                GolfBall golfBall = golfBalls.get(random.nextInt(golfBalls.size()));
+                int kind = random.nextInt(100);
+                String request;
+                if (kind < adds) {
+                    request = "add " + fields(golfBall);
+                } else if (kind < adds + filters) {
+                    request = "filter " + golfBall.getColor();
+                } else {
+                    request = "contains " + fields(golfBall);
+                }
+                long start = System.nanoTime();
+                output.append(request).append('\n');
+                output.flush();
+                String status = input.readLine();
+                if (status == null || !status.startsWith("OK ")) {
+                    throw new IOException("Server answered \"" + status + "\" to " + request);
+                }
+                int lines = Integer.parseInt(status.substring(3));
+                for (int j = 0; j < lines; j++) {
+                    input.readLine();
+                }
+                latencies[i] = System.nanoTime() - start;
+            }
+        }
+        return latencies;
+    }
+
+    // Returns:
+    //   - The color, year, and description of the given golf ball, separated by spaces
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to describe
+    private static String fields(GolfBall golfBall) {
+        return golfBall.getColor() + " " + golfBall.getYear() + " "
+                + golfBall.getDescription();
+    }
+
+    // Returns:
+    //   - The value at the given fraction of the given sorted latencies
+    // Parameters:
+    //   - long[] sorted - the latencies, in increasing order
+    //   - double fraction - the percentile to find, between 0 and 1
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(sorted.length * fraction) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,157 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Runs a script of collection commands without prompts, one command per line. Runs of
+// consecutive adds are collected and inserted together with a single addAll, and every
+// result is written to one buffered output that is flushed only at the end. Blank
+// lines and lines starting with # are skipped.
+//
+// Commands:
+//   add <color> <year> <description>        adds a golf ball
+//   contains <color> <year> <description>   prints true or false
+//   remove <color> <year> <description>     removes a golf ball, printing whether it was
+//                                           present
+//   filter <color>                          prints each golf ball of the color
+//   print                                   prints the whole collection
+//   size                                    prints the number of golf balls
+//   load <file>                             adds the golf balls in a file
+//   save <file>                             saves the collection to a file
+// Files ending in .bin are read and written as binary snapshots.
+public class BatchRunner {
+    private final CollectionManager collection;
+    private final Writer output;
+    private final List<GolfBall> pendingAdds;
+    private int errors;
+
+    // Behavior:
+    //   - Creates a runner that applies commands to the given collection
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection or output is null
+    // Parameters:
+    //   - CollectionManager collection - the collection the commands change and query
+    //   - Writer output - where results and errors are written
+    public BatchRunner(CollectionManager collection, Writer output) {
+        if (collection == null || output == null) {
+            throw new IllegalArgumentException("Collection and output cannot be null");
+        }
+        this.collection = collection;
+        this.output = output;
+        this.pendingAdds = new ArrayList<>();
+        this.errors = 0;
+    }
+
+    // Behavior:
+    //   - Runs every command in the given script. A command that fails writes an error
+    //     naming its line to the output, and the script carries on with the next line.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given script is null
+    //   - Throws an IOException if the script cannot be read or the output written
+    // Returns:
+    //   - The number of commands that failed
+    // Parameters:
+    //   - BufferedReader script - the commands to run
+    public int run(BufferedReader script) throws IOException {
+        if (script == null) {
+            throw new IllegalArgumentException("Script cannot be null");
+        }
+        int lineNumber = 0;
+        String line = script.readLine();
+        while (line != null) {
+            lineNumber++;
+            try {
+                execute(line.strip());
+            } catch (IllegalArgumentException | IOException e) {
+                output.append("error: line ").append(String.valueOf(lineNumber))
+                      .append(": ").append(e.getMessage()).append('\n');
+                errors++;
+            }
+            line = script.readLine();
+        }
+        flushAdds();
+        output.flush();
+        return errors;
+    }
+
+    // Behavior:
+    //   - Runs a single command. Adds are only collected; they are inserted once a
+    //     different command needs to see them.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the command is malformed
+    //   - Throws an IOException if a file or the output cannot be used
+    // Parameters:
+    //   - String line - the command, without surrounding whitespace
+    private void execute(String line) throws IOException {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+        String[] words = line.split("\\s+", 2);
+        String command = words[0].toLowerCase(Locale.ROOT);
+        String rest = words.length > 1 ? words[1] : "";
+        if (command.equals("add")) {
+            pendingAdds.add(GolfBall.parse(rest));
+            return;
+        }
+        flushAdds();
+        if (command.equals("contains")) {
+            output.append(String.valueOf(collection.contains(GolfBall.parse(rest))))
+                  .append('\n');
+        } else if (command.equals("remove")) {
+            output.append(String.valueOf(collection.remove(GolfBall.parse(rest))))
+                  .append('\n');
+        } else if (command.equals("filter")) {
+            for (GolfBall golfBall : collection.filter(requireArgument(command, rest))) {
+                output.append(golfBall.toString()).append('\n');
+            }
+        } else if (command.equals("print")) {
+            collection.writeSorted(output);
+        } else if (command.equals("size")) {
+            output.append(String.valueOf(collection.size())).append('\n');
+        } else if (command.equals("load")) {
+            Path path = Paths.get(requireArgument(command, rest));
+            if (path.toString().endsWith(".bin")) {
+                collection.loadSnapshot(path);
+            } else {
+                collection.loadParallel(path);
+            }
+        } else if (command.equals("save")) {
+            Path path = Paths.get(requireArgument(command, rest));
+            if (path.toString().endsWith(".bin")) {
+                collection.saveSnapshot(path);
+            } else {
+                try (PrintStream file = new PrintStream(new BufferedOutputStream(
+                        Files.newOutputStream(path)))) {
+                    collection.save(file);
+                    if (file.checkError()) {
+                        throw new IOException("could not write " + path);
+                    }
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("unknown command \"" + words[0] + "\"");
+        }
+    }
+
+    // Behavior:
+    //   - Inserts every collected add with a single addAll
+    private void flushAdds() {
+        if (!pendingAdds.isEmpty()) {
+            collection.addAll(pendingAdds);
+            pendingAdds.clear();
+        }
+    }
+
+    // Returns:
+    //   - The given argument
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the argument is empty
+    // Parameters:
+    //   - String command - the command the argument belongs to
+    //   - String argument - the argument
+    private static String requireArgument(String command, String argument) {
+        if (argument.isEmpty()) {
+            throw new IllegalArgumentException(command + " needs an argument");
+        }
+        return argument;
+    }
+}
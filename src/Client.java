@@ -1,8 +1,14 @@
 import java.util.*;
 import java.io.*;
+import java.nio.file.*;
 
 public class Client {
-    public static void main(String[] args) throws FileNotFoundException {
+    private static final int PAGE_SIZE = 20;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(batch(args));
+        }
         Scanner console = new Scanner(System.in);
         System.out.println("Welcome to the CSE 123 Collection Manager! " +
                            "To begin, enter your desired mode of operation:");
@@ -31,7 +37,12 @@ public class Client {
                 inFile = new File(inFileName);
             }
     
-            collectionManager = new CollectionManager(new Scanner(inFile));
+            collectionManager = new CollectionManager();
+            if (inFileName.endsWith(".bin")) {
+                collectionManager.loadSnapshot(inFile.toPath());
+            } else {
+                collectionManager.loadParallel(inFile.toPath());
+            }
             System.out.println("Collection manager created!");
             System.out.println();
         }
@@ -45,10 +56,68 @@ public class Client {
                 collectionManager.add(GolfBall.parse(console));
                 System.out.println();
             } else if (option.equalsIgnoreCase("contains")) {
-                System.out.println(collectionManager.contains(GolfBall.parse(console)));
+                System.out.print("What color is your golf ball? ");
+                int colorIndex = GolfBall.getColorIndex(console.nextLine());
+                System.out.print("When did you get your golf ball? ");
+                int year = GolfBall.parseYear(console.nextLine());
+                System.out.print("Give a description of your golf ball: ");
+                String description = console.nextLine();
+                boolean found = colorIndex >= 0
+                        && collectionManager.contains(colorIndex, year, description);
+                System.out.println(found);
+                System.out.println();
+            } else if (option.equalsIgnoreCase("remove")) {
+                if (collectionManager.remove(GolfBall.parse(console))) {
+                    System.out.println("Removed.");
+                } else {
+                    System.out.println("  That item is not in the collection.");
+                }
+                System.out.println();
+            } else if (option.equalsIgnoreCase("replace")) {
+                System.out.println("Item to replace:");
+                GolfBall oldGolfBall = GolfBall.parse(console);
+                System.out.println("Replacement:");
+                GolfBall newGolfBall = GolfBall.parse(console);
+                if (collectionManager.replace(oldGolfBall, newGolfBall)) {
+                    System.out.println("Replaced.");
+                } else if (collectionManager.contains(newGolfBall)) {
+                    System.out.println("  The replacement is already in the collection.");
+                } else {
+                    System.out.println("  That item is not in the collection.");
+                }
+                System.out.println();
+            } else if (option.equalsIgnoreCase("retire")) {
+                System.out.print("Enter color to retire: ");
+                int colorIndex = GolfBall.getColorIndex(console.nextLine());
+                if (colorIndex < 0) {
+                    System.out.println("  Invalid color.");
+                } else {
+                    System.out.print("Retire items obtained before year: ");
+                    int year = GolfBall.parseYear(console.nextLine());
+                    int before = collectionManager.size();
+                    collectionManager.removeIf(golfBall -> golfBall.getYear() < year
+                            && golfBall.getColorIndex() == colorIndex);
+                    System.out.println("Retired " + (before - collectionManager.size())
+                                       + " items.");
+                }
                 System.out.println();
             } else if (option.equalsIgnoreCase("print")) {
-                System.out.println(collectionManager.toString());
+                Writer output = new BufferedWriter(new OutputStreamWriter(System.out));
+                collectionManager.writeSorted(output);
+                output.flush();
+                System.out.println();
+            } else if (option.equalsIgnoreCase("page")) {
+                int pages = Math.max(1, (collectionManager.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+                System.out.print("Enter page number (1-" + pages + "): ");
+                int page = Integer.parseInt(console.nextLine());
+                if (page < 1 || page > pages) {
+                    System.out.println("  Invalid page.");
+                } else {
+                    int offset = (page - 1) * PAGE_SIZE;
+                    for (GolfBall golfBall : collectionManager.page(offset, PAGE_SIZE)) {
+                        System.out.println(golfBall);
+                    }
+                }
                 System.out.println();
             } else if (option.equalsIgnoreCase("creative")) {
                 System.out.print("Enter color to filter: ");
@@ -58,8 +127,12 @@ public class Client {
             } else if (option.equalsIgnoreCase("save")) {
                 System.out.print("Enter file to save to: ");
                 String outFileName = console.nextLine();
-                PrintStream outFile = new PrintStream(new File(outFileName));
-                collectionManager.save(outFile);
+                if (outFileName.endsWith(".bin")) {
+                    collectionManager.saveSnapshot(new File(outFileName).toPath());
+                } else {
+                    PrintStream outFile = new PrintStream(new File(outFileName));
+                    collectionManager.save(outFile);
+                }
                 System.out.println("Collection Manager exported!");
                 System.out.println();
             } else if (!option.equalsIgnoreCase("quit")) {
@@ -72,11 +145,38 @@ public class Client {
         }
     }
 
+    // Behavior:
+    //   - Runs a script of commands without prompts, reading it from the file named
+    //     after --batch, or from standard input if no file (or -) is given. Every
+    //     result goes through one buffered writer.
+    // Exceptions:
+    //   - Throws an IOException if the script cannot be read
+    // Returns:
+    //   - 0 if every command succeeded, or 1 if any failed
+    // Parameters:
+    //   - String[] args - the command line arguments, starting with --batch
+    private static int batch(String[] args) throws IOException {
+        BufferedReader script;
+        if (args.length < 2 || args[1].equals("-")) {
+            script = new BufferedReader(new InputStreamReader(System.in), 1 << 16);
+        } else {
+            script = Files.newBufferedReader(Paths.get(args[1]));
+        }
+        Writer output = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        try (script) {
+            return new BatchRunner(new CollectionManager(), output).run(script) == 0 ? 0 : 1;
+        }
+    }
+
     private static void menu(Scanner console) {
         System.out.println("What would you like to do? Choose an option in brackets.");
         System.out.println("  [add] item");
         System.out.println("  [contains] item");
+        System.out.println("  [remove] item");
+        System.out.println("  [replace] item");
+        System.out.println("  [retire] items of a color older than a year");
         System.out.println("  [print] my collection");
+        System.out.println("  [page] through my collection");
         System.out.println("  [save] my collection");
         System.out.println("  [creative] extension");
         System.out.println("  [quit] program");
@@ -0,0 +1,198 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+
+// This class represents the differences between two versions of a collection of golf
+// balls: the golf balls that were added and the golf balls that went missing. Both
+// versions are read in sorted order and merged in a single pass, so comparing
+// collections of n and m golf balls takes O(n + m) time. Two binary snapshot files can
+// also be compared while streaming, holding only one golf ball from each at a time.
+//
+// Usage: java CollectionDiff <before.bin> <after.bin>
+// prints "+ " before each added golf ball and "- " before each missing one.
+public class CollectionDiff {
+    private final List<GolfBall> added;
+    private final List<GolfBall> missing;
+
+    // Represents a sorted sequence of golf balls read one at a time
+    private interface Source {
+        // Returns:
+        //   - The next golf ball in sorted order, or null if there are no more
+        // Exceptions:
+        //   - Throws an IOException if the golf ball cannot be read
+        GolfBall next() throws IOException;
+    }
+
+    // Behavior:
+    //   - Creates a diff holding the given golf balls
+    // Parameters:
+    //   - List<GolfBall> added - the golf balls only in the later version, in sorted order
+    //   - List<GolfBall> missing - the golf balls only in the earlier version, in sorted
+    //     order
+    private CollectionDiff(List<GolfBall> added, List<GolfBall> missing) {
+        this.added = Collections.unmodifiableList(added);
+        this.missing = Collections.unmodifiableList(missing);
+    }
+
+    // Returns:
+    //   - The differences from the first given collection to the second
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if either collection is null
+    // Parameters:
+    //   - CollectionManager before - the earlier version of the collection
+    //   - CollectionManager after - the later version of the collection
+    public static CollectionDiff between(CollectionManager before, CollectionManager after) {
+        if (before == null || after == null) {
+            throw new IllegalArgumentException("Collections cannot be null");
+        }
+        List<GolfBall> added = new ArrayList<>();
+        List<GolfBall> missing = new ArrayList<>();
+        try {
+            merge(source(before.iterator()), source(after.iterator()), added::add,
+                  missing::add);
+        } catch (IOException e) {
+            // Collections are read from memory and are always in sorted order
+            throw new UncheckedIOException(e);
+        }
+        return new CollectionDiff(added, missing);
+    }
+
+    // Behavior:
+    //   - Compares two binary snapshot files while streaming through both of them,
+    //     passing each difference to the given consumers in sorted order as it is found.
+    //     Neither collection is loaded into memory.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if any argument is null
+    //   - Throws an IOException if either file is not a valid snapshot or cannot be read
+    // Returns:
+    //   - The number of differences found
+    // Parameters:
+    //   - Path before - the snapshot of the earlier version of the collection
+    //   - Path after - the snapshot of the later version of the collection
+    //   - Consumer<GolfBall> added - receives each golf ball only in the later version
+    //   - Consumer<GolfBall> missing - receives each golf ball only in the earlier version
+    public static long compare(Path before, Path after, Consumer<GolfBall> added,
+                               Consumer<GolfBall> missing) throws IOException {
+        if (before == null || after == null || added == null || missing == null) {
+            throw new IllegalArgumentException("Arguments cannot be null");
+        }
+        try (GolfBallSnapshot first = GolfBallSnapshot.open(before);
+             GolfBallSnapshot second = GolfBallSnapshot.open(after)) {
+            return merge(first::next, second::next, added, missing);
+        }
+    }
+
+    // Behavior:
+    //   - Prints the differences between two snapshot files given on the command line
+    // Exceptions:
+    //   - Throws an IOException if either file cannot be read
+    // Parameters:
+    //   - String[] args - the earlier and later snapshot files
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java CollectionDiff <before.bin> <after.bin>");
+            System.exit(2);
+        }
+        PrintWriter output = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out), 1 << 16));
+        long differences = compare(Paths.get(args[0]), Paths.get(args[1]),
+                                   golfBall -> output.println("+ " + golfBall),
+                                   golfBall -> output.println("- " + golfBall));
+        output.flush();
+        System.exit(differences == 0 ? 0 : 1);
+    }
+
+    // Returns:
+    //   - The golf balls in the later version but not the earlier one, in sorted order
+    public List<GolfBall> getAdded() {
+        return added;
+    }
+
+    // Returns:
+    //   - The golf balls in the earlier version but not the later one, in sorted order
+    public List<GolfBall> getMissing() {
+        return missing;
+    }
+
+    // Returns:
+    //   - true if the two versions hold the same golf balls
+    public boolean isEmpty() {
+        return added.isEmpty() && missing.isEmpty();
+    }
+
+    // Returns:
+    //   - A String listing each added golf ball after "+ " and each missing golf ball
+    //     after "- ", one per line
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (GolfBall golfBall : added) {
+            result.append("+ ").append(golfBall).append('\n');
+        }
+        for (GolfBall golfBall : missing) {
+            result.append("- ").append(golfBall).append('\n');
+        }
+        return result.toString();
+    }
+
+    // Behavior:
+    //   - Merges two sorted sequences of golf balls, passing each golf ball found in
+    //     only one of them to the matching consumer
+    // Exceptions:
+    //   - Throws an IOException if either sequence cannot be read or is out of order
+    // Returns:
+    //   - The number of differences found
+    // Parameters:
+    //   - Source before - the golf balls of the earlier version
+    //   - Source after - the golf balls of the later version
+    //   - Consumer<GolfBall> added - receives each golf ball only in the later version
+    //   - Consumer<GolfBall> missing - receives each golf ball only in the earlier version
+    private static long merge(Source before, Source after, Consumer<GolfBall> added,
+                              Consumer<GolfBall> missing) throws IOException {
+        long differences = 0;
+        GolfBall first = before.next();
+        GolfBall second = after.next();
+        while (first != null || second != null) {
+            int comparison = first == null ? 1 : second == null ? -1 : first.compareTo(second);
+            if (comparison < 0) {
+                missing.accept(first);
+                differences++;
+                first = advance(before, first);
+            } else if (comparison > 0) {
+                added.accept(second);
+                differences++;
+                second = advance(after, second);
+            } else {
+                first = advance(before, first);
+                second = advance(after, second);
+            }
+        }
+        return differences;
+    }
+
+    // Returns:
+    //   - The golf ball after the given one in the given sequence, or null if there are
+    //     no more
+    // Exceptions:
+    //   - Throws an IOException if the sequence cannot be read or the next golf ball
+    //     does not come after the given one
+    // Parameters:
+    //   - Source source - the sequence to read from
+    //   - GolfBall previous - the golf ball last read from the sequence
+    private static GolfBall advance(Source source, GolfBall previous) throws IOException {
+        GolfBall next = source.next();
+        if (next != null && next.compareTo(previous) <= 0) {
+            throw new IOException("Golf balls are not in sorted order: " + next
+                                  + " follows " + previous);
+        }
+        return next;
+    }
+
+    // Returns:
+    //   - A source reading from the given iterator
+    // Parameters:
+    //   - Iterator<GolfBall> iterator - the golf balls to read, in sorted order
+    private static Source source(Iterator<GolfBall> iterator) {
+        return () -> iterator.hasNext() ? iterator.next() : null;
+    }
+}
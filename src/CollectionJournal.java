@@ -0,0 +1,309 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+// This class keeps a collection of golf balls persistent by pairing a binary snapshot
+// file with an append-only journal. Every golf ball added through the journal is
+// written to the end of the journal file before it is added to the collection, so
+// persisting a change costs one small write no matter how large the collection is.
+// Opening a journal loads the last snapshot and replays the journal on top of it.
+// Compaction folds the journal into a new snapshot in the background while adds
+// continue into a fresh journal.
+//
+// Each journal record is the length of its payload, the payload itself (the color's
+// index as one byte, the year, and the UTF-8 bytes of the description), and a CRC32
+// of the payload. A record cut short by a crash is detected and dropped on replay.
+public class CollectionJournal implements Closeable {
+    private static final String ROTATED_SUFFIX = ".old";
+
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final Path rotatedPath;
+    private final ConcurrentCollectionManager collection;
+    private final ExecutorService compactor;
+    private FileChannel journal;
+    private Future<?> compaction;
+
+    // Behavior:
+    //   - Opens the collection stored in the given snapshot and journal files, loading
+    //     the snapshot (if it exists) and replaying the journal over it. Journal files
+    //     left behind by an interrupted compaction are replayed as well.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if either path is null
+    //   - Throws an IOException if the files cannot be read or the journal cannot be
+    //     opened for writing
+    // Parameters:
+    //   - Path snapshotPath - the binary snapshot file holding the compacted collection
+    //   - Path journalPath - the journal file that adds are appended to
+    public CollectionJournal(Path snapshotPath, Path journalPath) throws IOException {
+        if (snapshotPath == null || journalPath == null) {
+            throw new IllegalArgumentException("Paths cannot be null");
+        }
+        this.snapshotPath = snapshotPath;
+        this.journalPath = journalPath;
+        this.rotatedPath = sibling(journalPath, ROTATED_SUFFIX);
+
+        CollectionManager recovered = new CollectionManager();
+        if (Files.exists(snapshotPath)) {
+            recovered.loadSnapshot(snapshotPath);
+        }
+        List<GolfBall> replayed = new ArrayList<>();
+        replay(rotatedPath, replayed);
+        replay(journalPath, replayed);
+        recovered.addAll(replayed);
+
+        this.collection = new ConcurrentCollectionManager(recovered);
+        this.journal = openJournal();
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "collection-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.compaction = null;
+    }
+
+    // Behavior:
+    //   - Adds the given golf ball to the collection if it is not already in the
+    //     collection, first appending it to the journal
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    //   - Throws an IOException if the journal cannot be written
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to add to the collection
+    public synchronized void add(GolfBall golfBall) throws IOException {
+        if (golfBall == null) {
+            throw new IllegalArgumentException("Golf ball cannot be null.");
+        }
+        if (!collection.contains(golfBall)) {
+            ByteBuffer record = encode(golfBall);
+            while (record.hasRemaining()) {
+                journal.write(record);
+            }
+            collection.add(golfBall);
+        }
+    }
+
+    // Behavior:
+    //   - Forces every journal record written so far onto the storage device
+    // Exceptions:
+    //   - Throws an IOException if the journal cannot be synced
+    public synchronized void sync() throws IOException {
+        journal.force(false);
+    }
+
+    // Behavior:
+    //   - Starts folding the journal into a new snapshot in the background. The current
+    //     journal is set aside and a fresh one is started right away, so adds are never
+    //     blocked by the compaction. Once the new snapshot has replaced the old one, the
+    //     set-aside journal is deleted. If a compaction is already running, it is
+    //     returned instead of starting another.
+    // Exceptions:
+    //   - Throws an IOException if the journal cannot be set aside
+    // Returns:
+    //   - A Future that completes when the compaction has finished
+    public synchronized Future<?> compact() throws IOException {
+        if (compaction != null && !compaction.isDone()) {
+            return compaction;
+        }
+        journal.force(false);
+        journal.close();
+        if (Files.exists(rotatedPath)) {
+            try (FileChannel rotated = FileChannel.open(rotatedPath, StandardOpenOption.APPEND);
+                 FileChannel current = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+                long position = 0;
+                long size = current.size();
+                while (position < size) {
+                    position += current.transferTo(position, size - position, rotated);
+                }
+                rotated.force(false);
+            }
+            Files.delete(journalPath);
+        } else {
+            Files.move(journalPath, rotatedPath, StandardCopyOption.ATOMIC_MOVE);
+        }
+        journal = openJournal();
+
+        CollectionManager snapshot = collection.snapshot();
+        compaction = compactor.submit(() -> {
+            // Saving a snapshot forces it to disk and moves it into place atomically
+            snapshot.saveSnapshot(snapshotPath);
+            Files.delete(rotatedPath);
+            return null;
+        });
+        return compaction;
+    }
+
+    // Returns:
+    //   - The number of bytes currently in the journal, which grows with each add and
+    //     drops back to zero when a compaction starts
+    // Exceptions:
+    //   - Throws an IOException if the size of the journal cannot be read
+    public synchronized long journalSize() throws IOException {
+        return journal.size();
+    }
+
+    // Behavior:
+    //   - Determines whether the collection contains the given golf ball
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Returns:
+    //   - true if the given golf ball is in the collection
+    //   - false if the given golf ball is not in the collection
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to look for
+    public boolean contains(GolfBall golfBall) {
+        return collection.contains(golfBall);
+    }
+
+    // Returns:
+    //   - A list of golf balls in the collection that are of the given color, in
+    //     sorted order
+    // Parameters:
+    //   - String color - the color of golf balls to include in the returned list
+    public List<GolfBall> filter(String color) {
+        return collection.filter(color);
+    }
+
+    // Returns:
+    //   - A read-only snapshot of the collection as it is now
+    public CollectionManager snapshot() {
+        return collection.snapshot();
+    }
+
+    // Returns:
+    //   - The number of golf balls in the collection
+    public int size() {
+        return collection.size();
+    }
+
+    // Behavior:
+    //   - Waits for any running compaction to finish and closes the journal
+    // Exceptions:
+    //   - Throws an IOException if the compaction failed or the journal cannot be closed
+    public synchronized void close() throws IOException {
+        compactor.shutdown();
+        try {
+            if (compaction != null) {
+                compaction.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for compaction");
+        } catch (ExecutionException e) {
+            throw new IOException("Compaction failed", e.getCause());
+        } finally {
+            journal.close();
+        }
+    }
+
+    // Behavior:
+    //   - Opens the journal file for appending, creating it if needed
+    // Exceptions:
+    //   - Throws an IOException if the journal cannot be opened
+    // Returns:
+    //   - A channel positioned at the end of the journal
+    private FileChannel openJournal() throws IOException {
+        FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    // Behavior:
+    //   - Reads every complete record in the given journal file into the given list. A
+    //     torn or corrupt record ends the replay, and the file is cut back to the last
+    //     complete record so that later appends follow valid data.
+    // Exceptions:
+    //   - Throws an IOException if the file cannot be read
+    // Parameters:
+    //   - Path path - the journal file to replay, which may not exist
+    //   - List<GolfBall> golfBalls - the list replayed golf balls are added to
+    private static void replay(Path path, List<GolfBall> golfBalls) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        long valid = 0;
+        long fileSize = Files.size(path);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(path)))) {
+            while (fileSize - valid >= 4) {
+                int payloadSize = input.readInt();
+                if (payloadSize < 5 || payloadSize > fileSize - valid - 8) {
+                    break;
+                }
+                GolfBall golfBall = decode(input, payloadSize);
+                if (golfBall == null) {
+                    break;
+                }
+                golfBalls.add(golfBall);
+                valid += payloadSize + 8;
+            }
+        }
+        if (valid < fileSize) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+    }
+
+    // Returns:
+    //   - A buffer holding the journal record for the given golf ball
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to encode
+    private static ByteBuffer encode(GolfBall golfBall) {
+        byte[] description = golfBall.getDescription().getBytes(StandardCharsets.UTF_8);
+        int payloadSize = 5 + description.length;
+        ByteBuffer record = ByteBuffer.allocate(payloadSize + 8);
+        record.putInt(payloadSize);
+        record.put((byte) golfBall.getColorIndex());
+        record.putInt(golfBall.getYear());
+        record.put(description);
+        CRC32 checksum = new CRC32();
+        checksum.update(record.array(), 4, payloadSize);
+        record.putInt((int) checksum.getValue());
+        record.flip();
+        return record;
+    }
+
+    // Behavior:
+    //   - Reads the payload and checksum of one journal record from the given input
+    // Exceptions:
+    //   - Throws an IOException if the input cannot be read
+    // Returns:
+    //   - The golf ball in the record, or null if the record is corrupt
+    // Parameters:
+    //   - DataInputStream input - the input positioned just after the record's length
+    //   - int payloadSize - the length of the record's payload
+    private static GolfBall decode(DataInputStream input, int payloadSize) throws IOException {
+        byte[] payload = new byte[payloadSize];
+        input.readFully(payload);
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        if (input.readInt() != (int) checksum.getValue()) {
+            return null;
+        }
+        ByteBuffer fields = ByteBuffer.wrap(payload);
+        int colorIndex = fields.get();
+        int year = fields.getInt();
+        String description = new String(payload, 5, payloadSize - 5, StandardCharsets.UTF_8);
+        try {
+            return new GolfBall(colorIndex, year, description);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Returns:
+    //   - The path of a file next to the given one with the given suffix added
+    // Parameters:
+    //   - Path path - the original file
+    //   - String suffix - the suffix to add to its name
+    private static Path sibling(Path path, String suffix) {
+        return path.resolveSibling(path.getFileName() + suffix);
+    }
+}
@@ -1,16 +1,54 @@
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
 
-// This class represents a collection of golf balls.
-public class CollectionManager {
+// This class represents a collection of golf balls, stored in an AVL tree so that
+// adding and looking up golf balls takes O(log n) time regardless of input order.
+// Tree nodes are never modified once built: an update copies only the nodes on the
+// path it changes and shares every other subtree with the previous version, so copies
+// of a collection are cheap and can be read while the original keeps changing.
+public class CollectionManager implements Iterable<GolfBall> {
+    // An AVL tree of n nodes is at most about 1.44 * log2(n) tall, so this comfortably
+    // covers any collection that fits in memory.
+    private static final int MAX_HEIGHT = 64;
+    // Subtrees smaller than this are aggregated directly, since forking costs more.
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private final boolean readOnly;
     private GolfBallNode overallRoot;
+    private CollectionMetrics metrics;
+    private GolfBallBloomFilter bloomFilter;
+    private QueryCache queryCache;
 
     // Behavior:
     //   - Creates a new empty collection of golf balls.
     public CollectionManager() {
+        readOnly = false;
         overallRoot = null;
     }
 
+    // Behavior:
+    //   - Creates a new collection of golf balls holding the given tree
+    // Parameters:
+    //   - GolfBallNode overallRoot - the root of the tree, which is shared, not copied
+    //   - boolean readOnly - true if the new collection cannot be changed
+    //   - CollectionMetrics metrics - the metrics to record into, or null for none
+    //   - GolfBallBloomFilter bloomFilter - the filter to share, or null for none
+    //   - QueryCache queryCache - the cached query results, or null for none, which
+    //     must not be shared with another collection
+    private CollectionManager(GolfBallNode overallRoot, boolean readOnly,
+                              CollectionMetrics metrics, GolfBallBloomFilter bloomFilter,
+                              QueryCache queryCache) {
+        this.readOnly = readOnly;
+        this.overallRoot = overallRoot;
+        this.metrics = metrics;
+        this.bloomFilter = bloomFilter;
+        this.queryCache = queryCache;
+    }
+
     // Behavior:
     //   - Creates a new collection of golf balls based on the given input in sorted
     //     order. Sorted order means golf balls at the beginning of the rainbow come 
@@ -25,28 +63,371 @@ public class CollectionManager {
         if (input == null) {
             throw new IllegalArgumentException("Input cannot be null");
         }
-        buildCollection(input);
+        readOnly = false;
+        addAll(buildCollection(input));
     }
 
     // Behavior:
-    //   - Builds a collection of golf balls in sorted order using the given input
+    //   - Reads every golf ball described by the given input, in input order
+    // Returns:
+    //   - A list of the golf balls read from the input
     // Parameters: 
     //   - Scanner input - the Scanner used to read input about what golf balls
     //     to add to the collection
-    private void buildCollection(Scanner input) {
-        if (input.hasNextLine()) {
+    private List<GolfBall> buildCollection(Scanner input) {
+        List<GolfBall> golfBalls = new ArrayList<>();
+        while (input.hasNextLine()) {
             String color = input.nextLine();
             int year = Integer.parseInt(input.nextLine());
             String description = input.nextLine();
-            GolfBall newGolfBall = new GolfBall(color, year, description);
-            add(newGolfBall);
-            buildCollection(input);
+            golfBalls.add(new GolfBall(color, year, description));
+        }
+        return golfBalls;
+    }
+
+    // Behavior:
+    //   - Adds every golf ball read from the given reader to the collection. Golf balls
+    //     are collected as they are parsed and then added in bulk, so loading takes
+    //     time and memory linear in the size of the input.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given reader is null or the input
+    //     is malformed
+    //   - Throws an IOException if the input cannot be read
+    // Parameters:
+    //   - GolfBallReader input - the reader to load golf balls from
+    public void load(GolfBallReader input) throws IOException {
+        if (input == null) {
+            throw new IllegalArgumentException("Input cannot be null");
+        }
+        checkWritable();
+        long start = System.nanoTime();
+        List<GolfBall> golfBalls = new ArrayList<>();
+        GolfBall next = input.next();
+        while (next != null) {
+            golfBalls.add(next);
+            next = input.next();
+        }
+        addAll(golfBalls);
+        if (metrics != null) {
+            metrics.recordLoad(System.nanoTime() - start);
+        }
+    }
+
+    // Behavior:
+    //   - Adds every golf ball in the given text file to the collection, parsing and
+    //     sorting parts of the file on all cores at once and then building the tree in
+    //     a single pass
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given path is null or the input is
+    //     malformed
+    //   - Throws an IOException if the file cannot be read
+    // Parameters:
+    //   - Path path - the file to load, in the format written by save
+    public void loadParallel(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        checkWritable();
+        long start = System.nanoTime();
+        addAll(new ParallelLoader().read(path));
+        if (metrics != null) {
+            metrics.recordLoad(System.nanoTime() - start);
+        }
+    }
+
+    // Behavior:
+    //   - Adds all of the given golf balls to the collection, skipping any that are
+    //     already present. Input that is already sorted (for example, a binary snapshot)
+    //     is used as-is, and input in the pre-order that save writes is put back in
+    //     sorted order in linear time; any other input is sorted once. The tree is then
+    //     rebuilt perfectly balanced in linear time instead of inserting one golf ball
+    //     at a time.
+    //     Small batches added to a large collection are inserted individually instead,
+    //     since that is cheaper than rebuilding the whole tree.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection or any golf ball
+    //     in it is null
+    // Parameters:
+    //   - Collection<GolfBall> golfBalls - the golf balls to add to the collection
+    public void addAll(Collection<GolfBall> golfBalls) {
+        if (golfBalls == null) {
+            throw new IllegalArgumentException("Golf balls cannot be null.");
+        }
+        checkWritable();
+        GolfBall[] added = golfBalls.toArray(new GolfBall[0]);
+        for (GolfBall golfBall : added) {
+            if (golfBall == null) {
+                throw new IllegalArgumentException("Golf ball cannot be null.");
+            }
+        }
+        int existing = size(overallRoot);
+        if (existing > 0 && (long) added.length * log2(existing) < existing) {
+            for (GolfBall golfBall : added) {
+                insert(golfBall);
+            }
+            recordShape();
+            return;
+        }
+        int addedCount = sortDistinct(added);
+        GolfBall[] merged = added;
+        int mergedCount = addedCount;
+        if (existing > 0) {
+            GolfBall[] current = new GolfBall[existing];
+            collect(overallRoot, current, 0);
+            merged = new GolfBall[existing + addedCount];
+            mergedCount = merge(current, existing, added, addedCount, merged);
+        }
+        overallRoot = build(merged, 0, mergedCount);
+        if (queryCache != null) {
+            long colorMask = 0;
+            for (int i = 0; i < addedCount; i++) {
+                colorMask |= 1L << added[i].getColorIndex();
+            }
+            queryCache.invalidate(colorMask);
+        }
+        if (bloomFilter != null) {
+            bloomFilter = bloomFilter.rebuild(Arrays.asList(merged).subList(0, mergedCount),
+                                              2 * mergedCount);
+        }
+        recordShape();
+    }
+
+    // Returns:
+    //   - A new collection holding every golf ball in this collection or the given one.
+    //     Both collections are read in sorted order and merged in one pass, and the
+    //     result is built perfectly balanced, so this takes O(n + m) time.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection is null
+    // Parameters:
+    //   - CollectionManager other - the collection to combine with this one
+    public CollectionManager union(CollectionManager other) {
+        return combine(other, true, true, true);
+    }
+
+    // Returns:
+    //   - A new collection holding the golf balls in both this collection and the given
+    //     one, found by merging the two in O(n + m) time
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection is null
+    // Parameters:
+    //   - CollectionManager other - the collection to intersect with this one
+    public CollectionManager intersect(CollectionManager other) {
+        return combine(other, false, true, false);
+    }
+
+    // Returns:
+    //   - A new collection holding the golf balls in this collection that are not in the
+    //     given one, found by merging the two in O(n + m) time
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection is null
+    // Parameters:
+    //   - CollectionManager other - the collection whose golf balls are left out
+    public CollectionManager difference(CollectionManager other) {
+        return combine(other, true, false, false);
+    }
+
+    // Returns:
+    //   - The golf balls added to and missing from the given collection compared to this
+    //     one, found by merging the two in O(n + m) time
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection is null
+    // Parameters:
+    //   - CollectionManager other - the later version of this collection
+    public CollectionDiff diff(CollectionManager other) {
+        return CollectionDiff.between(this, other);
+    }
+
+    // Returns:
+    //   - A new collection built from the golf balls of this collection and the given
+    //     one that the given flags select
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection is null
+    // Parameters:
+    //   - CollectionManager other - the collection to combine with this one
+    //   - boolean keepOnlyThis - whether to keep golf balls only in this collection
+    //   - boolean keepBoth - whether to keep golf balls in both collections
+    //   - boolean keepOnlyOther - whether to keep golf balls only in the given collection
+    private CollectionManager combine(CollectionManager other, boolean keepOnlyThis,
+                                      boolean keepBoth, boolean keepOnlyOther) {
+        if (other == null) {
+            throw new IllegalArgumentException("Collection cannot be null");
+        }
+        GolfBall[] first = new GolfBall[size(overallRoot)];
+        collect(overallRoot, first, 0);
+        GolfBall[] second = new GolfBall[size(other.overallRoot)];
+        collect(other.overallRoot, second, 0);
+        GolfBall[] result = new GolfBall[first.length + second.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length || j < second.length) {
+            int comparison = i == first.length ? 1
+                    : j == second.length ? -1 : first[i].compareTo(second[j]);
+            if (comparison < 0) {
+                if (keepOnlyThis) {
+                    result[count++] = first[i];
+                }
+                i++;
+            } else if (comparison > 0) {
+                if (keepOnlyOther) {
+                    result[count++] = second[j];
+                }
+                j++;
+            } else {
+                if (keepBoth) {
+                    result[count++] = first[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        return new CollectionManager(build(result, 0, count), false, null, null, null);
+    }
+
+    // Behavior:
+    //   - Sorts the given golf balls and moves one copy of each distinct golf ball to
+    //     the front of the array. Already sorted input is only scanned, and the
+    //     pre-order of a search tree is reordered in linear time; only other input is
+    //     sorted with a comparison sort.
+    // Returns:
+    //   - The number of distinct golf balls at the front of the array
+    // Parameters:
+    //   - GolfBall[] golfBalls - the golf balls to sort
+    private static int sortDistinct(GolfBall[] golfBalls) {
+        for (int i = 1; i < golfBalls.length; i++) {
+            if (golfBalls[i - 1].compareTo(golfBalls[i]) > 0) {
+                if (!sortPreorder(golfBalls)) {
+                    Arrays.sort(golfBalls);
+                }
+                break;
+            }
+        }
+        int count = 0;
+        for (GolfBall golfBall : golfBalls) {
+            if (count == 0 || golfBalls[count - 1].compareTo(golfBall) != 0) {
+                golfBalls[count] = golfBall;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Behavior:
+    //   - Puts the given golf balls in sorted order if they are the pre-order of a
+    //     binary search tree, as written by save. Each golf ball is pushed on a stack,
+    //     and the smaller golf balls on top of it are popped off in sorted order when a
+    //     larger one arrives, so this takes O(n) time. Golf balls that could not come
+    //     from such a tree are detected when one is smaller than a golf ball already
+    //     popped, and the array is then left unchanged.
+    // Returns:
+    //   - true if the golf balls were in pre-order and are now sorted, false otherwise
+    // Parameters:
+    //   - GolfBall[] golfBalls - the golf balls to reorder
+    private static boolean sortPreorder(GolfBall[] golfBalls) {
+        GolfBall[] stack = new GolfBall[golfBalls.length];
+        GolfBall[] sorted = new GolfBall[golfBalls.length];
+        int top = 0;
+        int count = 0;
+        for (GolfBall golfBall : golfBalls) {
+            if (count > 0 && golfBall.compareTo(sorted[count - 1]) < 0) {
+                return false;
+            }
+            while (top > 0 && stack[top - 1].compareTo(golfBall) < 0) {
+                sorted[count++] = stack[--top];
+            }
+            stack[top++] = golfBall;
+        }
+        while (top > 0) {
+            sorted[count++] = stack[--top];
+        }
+        System.arraycopy(sorted, 0, golfBalls, 0, count);
+        return true;
+    }
+
+    // Behavior:
+    //   - Merges two sorted, duplicate-free runs of golf balls into one, keeping a
+    //     single copy of golf balls that appear in both
+    // Returns:
+    //   - The number of golf balls written to the result
+    // Parameters:
+    //   - GolfBall[] first - the first sorted run
+    //   - int firstCount - the number of golf balls in the first run
+    //   - GolfBall[] second - the second sorted run
+    //   - int secondCount - the number of golf balls in the second run
+    //   - GolfBall[] result - the array the merged run is written to
+    private static int merge(GolfBall[] first, int firstCount, GolfBall[] second,
+                             int secondCount, GolfBall[] result) {
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < firstCount && j < secondCount) {
+            int comparison = first[i].compareTo(second[j]);
+            if (comparison < 0) {
+                result[count++] = first[i++];
+            } else if (comparison > 0) {
+                result[count++] = second[j++];
+            } else {
+                result[count++] = first[i++];
+                j++;
+            }
+        }
+        while (i < firstCount) {
+            result[count++] = first[i++];
+        }
+        while (j < secondCount) {
+            result[count++] = second[j++];
+        }
+        return count;
+    }
+
+    // Behavior:
+    //   - Builds a perfectly balanced tree from a sorted, duplicate-free range of
+    //     golf balls
+    // Returns:
+    //   - The root of the new tree, or null if the range is empty
+    // Parameters:
+    //   - GolfBall[] sorted - the sorted golf balls
+    //   - int from - the index of the first golf ball in the range (inclusive)
+    //   - int to - the index just past the last golf ball in the range (exclusive)
+    private static GolfBallNode build(GolfBall[] sorted, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new GolfBallNode(sorted[middle], build(sorted, from, middle),
+                                build(sorted, middle + 1, to));
+    }
+
+    // Behavior:
+    //   - Copies the golf balls in the given subtree into the array in sorted order
+    // Returns:
+    //   - The index just past the last golf ball written
+    // Parameters:
+    //   - GolfBallNode currentRoot - the root of the subtree to copy
+    //   - GolfBall[] golfBalls - the array to copy into
+    //   - int index - the index the first golf ball is written to
+    private static int collect(GolfBallNode currentRoot, GolfBall[] golfBalls, int index) {
+        if (currentRoot != null) {
+            index = collect(currentRoot.left, golfBalls, index);
+            golfBalls[index++] = currentRoot.golfBall;
+            index = collect(currentRoot.right, golfBalls, index);
         }
+        return index;
+    }
+
+    // Returns:
+    //   - The base 2 logarithm of the given positive number, rounded up
+    // Parameters:
+    //   - int n - the number to take the logarithm of
+    private static int log2(int n) {
+        return 32 - Integer.numberOfLeadingZeros(n - 1);
     }
 
     // Behavior:
     //   - Adds the given golf ball to the collection if it is not already in the
-    //     collection, preserving sorted order
+    //     collection, preserving sorted order. The tree is rebalanced on the way back
+    //     up from the insertion point, so its height stays O(log n) no matter what
+    //     order golf balls are added in.
     // Exceptions:
     //   - Throws an IllegalArgumentException if the given golf ball is null
     // Parameters:
@@ -55,30 +436,271 @@ public class CollectionManager {
         if (golfBall == null) {
             throw new IllegalArgumentException("Golf ball cannot be null.");
         }
-        if (!contains(golfBall)) {
-            this.overallRoot = add(golfBall, overallRoot);
+        checkWritable();
+        if (metrics == null) {
+            insert(golfBall);
+        } else {
+            long start = System.nanoTime();
+            insert(golfBall);
+            metrics.recordAdd(System.nanoTime() - start);
+            recordShape();
         }
     }
 
     // Behavior:
-    //   - Adds the given golf ball to the collection if it is not already in the
-    //     collection, preserving sorted order
+    //   - Adds the given golf ball to the tree if it is not already in it, copying and
+    //     rebalancing the path from the root to the insertion point
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to add, which is not null
+    private void insert(GolfBall golfBall) {
+        GolfBallNode[] path = new GolfBallNode[MAX_HEIGHT];
+        boolean[] wentLeft = new boolean[MAX_HEIGHT];
+        int depth = 0;
+        GolfBallNode currentRoot = overallRoot;
+        while (currentRoot != null) {
+            int comparison = golfBall.compareTo(currentRoot.golfBall);
+            if (comparison == 0) {
+                return;
+            }
+            path[depth] = currentRoot;
+            wentLeft[depth] = comparison < 0;
+            depth++;
+            currentRoot = wentLeft[depth - 1] ? currentRoot.left : currentRoot.right;
+        }
+        GolfBallNode subtree = new GolfBallNode(golfBall, null, null);
+        while (depth > 0) {
+            depth--;
+            GolfBallNode parent = path[depth];
+            if (wentLeft[depth]) {
+                subtree = balance(parent.golfBall, subtree, parent.right);
+            } else {
+                subtree = balance(parent.golfBall, parent.left, subtree);
+            }
+        }
+        overallRoot = subtree;
+        if (queryCache != null) {
+            queryCache.invalidate(1L << golfBall.getColorIndex());
+        }
+        if (bloomFilter != null) {
+            if (subtree.size > bloomFilter.getCapacity()) {
+                bloomFilter = bloomFilter.rebuild(this, 2 * subtree.size);
+            } else {
+                bloomFilter.add(golfBall);
+            }
+        }
+    }
+
+    // Behavior:
+    //   - Removes the given golf ball from the collection if it is present. Only the
+    //     path from the root to the removed golf ball is copied and rebalanced, so this
+    //     takes O(log n) time.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
     // Returns:
-    //   - A GolfBallNode representing the modified collection after adding the
-    //     golf ball
+    //   - true if the golf ball was in the collection and has been removed
+    //   - false if the golf ball was not in the collection
     // Parameters:
-    //   - GolfBall golfBall - the golf ball to add to the collection
-    //   - GolfBallNode currentRoot - the current GolfBallNode being compared to
-    //     the golf ball to be added
-    private GolfBallNode add(GolfBall golfBall, GolfBallNode currentRoot) {
+    //   - GolfBall golfBall - the golf ball to remove from the collection
+    public boolean remove(GolfBall golfBall) {
+        if (golfBall == null) {
+            throw new IllegalArgumentException("Golf ball cannot be null.");
+        }
+        checkWritable();
+        boolean removed = delete(golfBall);
+        if (removed) {
+            recordShape();
+        }
+        return removed;
+    }
+
+    // Behavior:
+    //   - Removes every golf ball in the collection that matches the given predicate.
+    //     The remaining golf balls are gathered in one in-order pass and the tree is
+    //     rebuilt perfectly balanced from them, so this takes linear time however many
+    //     golf balls are removed.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given predicate is null
+    // Returns:
+    //   - true if any golf balls were removed
+    //   - false if no golf ball matched
+    // Parameters:
+    //   - Predicate<? super GolfBall> filter - returns true for the golf balls to remove
+    public boolean removeIf(Predicate<? super GolfBall> filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Predicate cannot be null");
+        }
+        checkWritable();
+        int existing = size(overallRoot);
+        GolfBall[] golfBalls = new GolfBall[existing];
+        collect(overallRoot, golfBalls, 0);
+        int kept = 0;
+        long colorMask = 0;
+        for (int i = 0; i < existing; i++) {
+            if (filter.test(golfBalls[i])) {
+                colorMask |= 1L << golfBalls[i].getColorIndex();
+            } else {
+                golfBalls[kept] = golfBalls[i];
+                kept++;
+            }
+        }
+        if (kept == existing) {
+            return false;
+        }
+        overallRoot = build(golfBalls, 0, kept);
+        if (queryCache != null) {
+            queryCache.invalidate(colorMask);
+        }
+        if (bloomFilter != null) {
+            bloomFilter = bloomFilter.rebuild(Arrays.asList(golfBalls).subList(0, kept),
+                                              2 * kept);
+        }
+        recordShape();
+        return true;
+    }
+
+    // Behavior:
+    //   - Removes all of the given golf balls that are in the collection. Small batches
+    //     are removed one at a time in O(log n) each; larger ones in a single pass with
+    //     removeIf, like addAll does for additions.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection or any golf ball
+    //     in it is null
+    // Parameters:
+    //   - Collection<GolfBall> golfBalls - the golf balls to remove from the collection
+    public void removeAll(Collection<GolfBall> golfBalls) {
+        if (golfBalls == null) {
+            throw new IllegalArgumentException("Golf balls cannot be null.");
+        }
+        checkWritable();
+        for (GolfBall golfBall : golfBalls) {
+            if (golfBall == null) {
+                throw new IllegalArgumentException("Golf ball cannot be null.");
+            }
+        }
+        int existing = size(overallRoot);
+        if (existing > 0 && (long) golfBalls.size() * log2(existing) < existing) {
+            for (GolfBall golfBall : golfBalls) {
+                delete(golfBall);
+            }
+            recordShape();
+        } else if (!golfBalls.isEmpty()) {
+            removeIf(new HashSet<>(golfBalls)::contains);
+        }
+    }
+
+    // Behavior:
+    //   - Replaces the first given golf ball with the second, for example to correct a
+    //     golf ball's description. Nothing changes if the first golf ball is not in the
+    //     collection, or if the second one already is, since replacing it would merge
+    //     the two and shrink the collection. Takes O(log n) time.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if either golf ball is null
+    // Returns:
+    //   - true if the first golf ball was in the collection and has been replaced, or
+    //     if both golf balls are the same one and it is in the collection
+    //   - false if the first golf ball was not in the collection or the second one
+    //     already was
+    // Parameters:
+    //   - GolfBall oldGolfBall - the golf ball to remove
+    //   - GolfBall newGolfBall - the golf ball to add in its place
+    public boolean replace(GolfBall oldGolfBall, GolfBall newGolfBall) {
+        if (oldGolfBall == null || newGolfBall == null) {
+            throw new IllegalArgumentException("Golf ball cannot be null.");
+        }
+        checkWritable();
+        if (oldGolfBall.compareTo(newGolfBall) == 0) {
+            return find(oldGolfBall);
+        }
+        if (find(newGolfBall) || !delete(oldGolfBall)) {
+            return false;
+        }
+        insert(newGolfBall);
+        recordShape();
+        return true;
+    }
+
+    // Returns:
+    //   - true if the given golf ball is in the tree, found without consulting the
+    //     Bloom filter or recording the lookup in any counters
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to look for, which is not null
+    private boolean find(GolfBall golfBall) {
+        GolfBallNode currentRoot = overallRoot;
+        while (currentRoot != null) {
+            int comparison = golfBall.compareTo(currentRoot.golfBall);
+            if (comparison == 0) {
+                return true;
+            }
+            currentRoot = comparison < 0 ? currentRoot.left : currentRoot.right;
+        }
+        return false;
+    }
+
+    // Behavior:
+    //   - Removes the given golf ball from the tree if it is in it, copying and
+    //     rebalancing the path from the root to the removed node. A node with two
+    //     children takes the golf ball of its successor, which is removed from the
+    //     right subtree instead.
+    // Returns:
+    //   - true if the golf ball was in the tree
+    //   - false if the golf ball was not in the tree
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to remove, which is not null
+    private boolean delete(GolfBall golfBall) {
+        GolfBallNode[] path = new GolfBallNode[MAX_HEIGHT];
+        boolean[] wentLeft = new boolean[MAX_HEIGHT];
+        int depth = 0;
+        GolfBallNode currentRoot = overallRoot;
+        while (currentRoot != null) {
+            int comparison = golfBall.compareTo(currentRoot.golfBall);
+            if (comparison == 0) {
+                break;
+            }
+            path[depth] = currentRoot;
+            wentLeft[depth] = comparison < 0;
+            depth++;
+            currentRoot = wentLeft[depth - 1] ? currentRoot.left : currentRoot.right;
+        }
         if (currentRoot == null) {
-            return new GolfBallNode(golfBall);
-        } else if (golfBall.compareTo(currentRoot.golfBall) < 0) {
-            currentRoot.left = add(golfBall, currentRoot.left);
+            return false;
+        }
+        GolfBallNode subtree;
+        int removedDepth = -1;
+        GolfBall successor = null;
+        if (currentRoot.left == null) {
+            subtree = currentRoot.right;
+        } else if (currentRoot.right == null) {
+            subtree = currentRoot.left;
         } else {
-            currentRoot.right = add(golfBall, currentRoot.right);
+            removedDepth = depth;
+            path[depth] = currentRoot;
+            wentLeft[depth] = false;
+            depth++;
+            GolfBallNode next = currentRoot.right;
+            while (next.left != null) {
+                path[depth] = next;
+                wentLeft[depth] = true;
+                depth++;
+                next = next.left;
+            }
+            successor = next.golfBall;
+            subtree = next.right;
+        }
+        while (depth > 0) {
+            depth--;
+            GolfBallNode parent = path[depth];
+            GolfBall parentGolfBall = depth == removedDepth ? successor : parent.golfBall;
+            if (wentLeft[depth]) {
+                subtree = balance(parentGolfBall, subtree, parent.right);
+            } else {
+                subtree = balance(parentGolfBall, parent.left, subtree);
+            }
         }
-        return currentRoot;
+        overallRoot = subtree;
+        if (queryCache != null) {
+            queryCache.invalidate(1L << golfBall.getColorIndex());
+        }
+        return true;
     }
 
     // Behavior:
@@ -95,130 +717,1264 @@ public class CollectionManager {
         if (golfBall == null) {
             throw new IllegalArgumentException("Golf ball cannot be null");
         }
-        return contains(golfBall, overallRoot);
+        if (metrics != null) {
+            return measuredContains(golfBall);
+        }
+        if (definitelyAbsent(golfBall)) {
+            return false;
+        }
+        GolfBallNode currentRoot = overallRoot;
+        while (currentRoot != null) {
+            int comparison = golfBall.compareTo(currentRoot.golfBall);
+            if (comparison == 0) {
+                return recordLookup(true);
+            }
+            currentRoot = comparison < 0 ? currentRoot.left : currentRoot.right;
+        }
+        return recordLookup(false);
     }
 
     // Behavior:
-    //   - Determines whether the collection contains the given golf ball
+    //   - Determines whether the collection contains a golf ball with the given color,
+    //     year, and description, comparing the fields directly against the tree without
+    //     creating a GolfBall or any other object. The description may be a slice of a
+    //     loader's buffer.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given color index is out of range or
+    //     the given description is null
     // Returns:
-    //   - true if the given golf ball is in the collection
-    //   - false if the given golf ball is not in the collection
+    //   - true if such a golf ball is in the collection
+    //   - false if no such golf ball is in the collection
     // Parameters:
-    //   - GolfBall golfBall - the golf ball to be checked for its presence in the
-    //     collection
-    //   - GolfBallNode currentRoot - the current GolfBallNode being checked if it
-    //     matches the target golf ball
-    private boolean contains(GolfBall golfBall, GolfBallNode currentRoot) {
-        if (currentRoot == null) {
-            return false;
-        } else if (currentRoot.golfBall.equals(golfBall)) {
-            return true;
-        } else if (golfBall.compareTo(currentRoot.golfBall) < 0) {
-            return contains(golfBall, currentRoot.left);
+    //   - int colorIndex - the index of the golf ball's color, from GolfBall.getColorIndex
+    //   - int year - the year the golf ball was obtained
+    //   - CharSequence description - the golf ball's description
+    public boolean contains(int colorIndex, int year, CharSequence description) {
+        if (colorIndex < 0 || colorIndex >= GolfBall.getColorCount()) {
+            throw new IllegalArgumentException("Invalid color index: " + colorIndex);
+        }
+        if (description == null) {
+            throw new IllegalArgumentException("Description cannot be null");
+        }
+        long start = metrics == null ? 0 : System.nanoTime();
+        int comparisons = 0;
+        boolean found = false;
+        if (bloomFilter != null
+                && !bloomFilter.mightContain(colorIndex, year, description)) {
+            bloomFilter.recordDefiniteMiss();
         } else {
-            return contains(golfBall, currentRoot.right);
+            GolfBallNode currentRoot = overallRoot;
+            while (currentRoot != null && !found) {
+                int comparison = currentRoot.golfBall.compareTo(colorIndex, year, description);
+                comparisons++;
+                found = comparison == 0;
+                currentRoot = comparison > 0 ? currentRoot.left : currentRoot.right;
+            }
+            recordLookup(found);
         }
+        if (metrics != null) {
+            metrics.recordContains(System.nanoTime() - start, comparisons);
+        }
+        return found;
     }
 
+    // Behavior:
+    //   - Asks the Bloom filter, if there is one, whether the given golf ball could be in
+    //     the collection, counting the lookup if it could not
     // Returns:
-    //   - A String representation of the collection, including the color, year, and
-    //     description of each golf ball in sorted order.
-    public String toString() {
-        return toString(overallRoot, "");
+    //   - true if the filter shows the golf ball is definitely not in the collection
+    //   - false if there is no filter or the golf ball may be in the collection
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to look for, which is not null
+    private boolean definitelyAbsent(GolfBall golfBall) {
+        if (bloomFilter == null || bloomFilter.mightContain(golfBall)) {
+            return false;
+        }
+        bloomFilter.recordDefiniteMiss();
+        return true;
     }
 
+    // Behavior:
+    //   - Counts the outcome of a lookup the Bloom filter passed on, if there is one
     // Returns:
-    //   - A String representation of the collection, including the color, year, and
-    //     description of each golf ball in sorted order.
+    //   - The given outcome
     // Parameters:
-    //   - GolfBallNode currentRoot - the current GolfBallNode having its information
-    //     added to the String
-    //   - String soFar - the in-progress String representation of the collection
-    private String toString(GolfBallNode currentRoot, String soFar) {
-        if (currentRoot != null) {
-            soFar = toString(currentRoot.left, soFar);
-            soFar += currentRoot.golfBall.toString() + "\n";
-            soFar = toString(currentRoot.right, soFar);
+    //   - boolean found - whether the tree held the golf ball
+    private boolean recordLookup(boolean found) {
+        if (bloomFilter != null) {
+            if (found) {
+                bloomFilter.recordHit();
+            } else {
+                bloomFilter.recordFalsePositive();
+            }
         }
-        return soFar;
+        return found;
     }
 
     // Behavior:
-    //   - Saves the collection to the given output destination in a pre-order fashion
-    // Exceptions:
-    //   - Throws an IllegalArgumentException if the given output is null
+    //   - Looks up the given golf ball like contains does, recording the time taken and
+    //     the number of comparisons made in the metrics
+    // Returns:
+    //   - true if the given golf ball is in the collection
+    //   - false if the given golf ball is not in the collection
     // Parameters:
-    //   - PrintStream output - the output destination the collection will be saved to
-    public void save(PrintStream output) {
-        if (output == null) {
-            throw new IllegalArgumentException("Output cannot be null");
+    //   - GolfBall golfBall - the golf ball to look for, which is not null
+    private boolean measuredContains(GolfBall golfBall) {
+        long start = System.nanoTime();
+        int comparisons = 0;
+        boolean found = false;
+        if (!definitelyAbsent(golfBall)) {
+            GolfBallNode currentRoot = overallRoot;
+            while (currentRoot != null && !found) {
+                int comparison = golfBall.compareTo(currentRoot.golfBall);
+                comparisons++;
+                found = comparison == 0;
+                currentRoot = comparison < 0 ? currentRoot.left : currentRoot.right;
+            }
+            recordLookup(found);
         }
-        save(output, overallRoot);
+        metrics.recordContains(System.nanoTime() - start, comparisons);
+        return found;
     }
 
-    // Behavior:
-    //   - Saves the collection to the given output destination in a pre-order fashion
+    // Returns:
+    //   - The height of the given subtree, where an empty subtree has height 0
     // Parameters:
-    //   - PrintStream output - the output destination the collection will be saved to
-    //   - GolfBallNode currentRoot - the current GolfBallNode having its golf ball
-    //     printed to the output destination
-    private void save(PrintStream output, GolfBallNode currentRoot) {
-        if (currentRoot != null) {
-            output.println(currentRoot.golfBall.getColor());
-            output.println(currentRoot.golfBall.getYear());
-            output.println(currentRoot.golfBall.getDescription());
-            save(output, currentRoot.left);
-            save(output, currentRoot.right);
-        }
+    //   - GolfBallNode currentRoot - the root of the subtree
+    private static int height(GolfBallNode currentRoot) {
+        return currentRoot == null ? 0 : currentRoot.height;
     }
 
     // Returns:
-    //   - A list of golf balls in the collection that are of the given color
+    //   - The number of golf balls in the given subtree
     // Parameters:
-    //   - String color - the color of golf balls to include in the returned list
-    public List<GolfBall> filter(String color) {
-        List<GolfBall> golfBalls = new ArrayList<>();
-        filter(GolfBall.getColorIndex(color), overallRoot, golfBalls);
-        return golfBalls;
+    //   - GolfBallNode currentRoot - the root of the subtree
+    private static int size(GolfBallNode currentRoot) {
+        return currentRoot == null ? 0 : currentRoot.size;
     }
 
-    // Behavior:
-    //   - Adds all the golf balls in the collection of the specified color to a list
+    // Returns:
+    //   - A new subtree holding the given golf ball above the given left and right
+    //     subtrees, rotated if needed so that it satisfies the AVL balance property.
+    //     The subtrees must already be balanced and differ in height by at most two.
     // Parameters:
-    //   - int targetColor - represents the color of the golf balls to add to the list
-    //   - GolfBallNode currentRoot - the current GolfBallNode having its golf ball's color
-    //     checked
-    //   - List<GolfBall> golfBalls - the list of golf balls of the specified color
-    private void filter(int targetColor, GolfBallNode currentRoot, List<GolfBall> golfBalls) {
-        if (currentRoot != null) {
-            int currColor = GolfBall.getColorIndex(currentRoot.golfBall.getColor());
-            if (targetColor == currColor) {
-                golfBalls.add(currentRoot.golfBall);
+    //   - GolfBall golfBall - the golf ball at the root of the subtree
+    //   - GolfBallNode left - the subtree of golf balls less than the given golf ball
+    //   - GolfBallNode right - the subtree of golf balls greater than the given golf ball
+    private static GolfBallNode balance(GolfBall golfBall, GolfBallNode left,
+                                        GolfBallNode right) {
+        int balance = height(left) - height(right);
+        if (balance > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new GolfBallNode(left.golfBall, left.left,
+                                        new GolfBallNode(golfBall, left.right, right));
             }
+            GolfBallNode pivot = left.right;
+            return new GolfBallNode(pivot.golfBall,
+                                    new GolfBallNode(left.golfBall, left.left, pivot.left),
+                                    new GolfBallNode(golfBall, pivot.right, right));
+        } else if (balance < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new GolfBallNode(right.golfBall,
+                                        new GolfBallNode(golfBall, left, right.left),
+                                        right.right);
+            }
+            GolfBallNode pivot = right.left;
+            return new GolfBallNode(pivot.golfBall,
+                                    new GolfBallNode(golfBall, left, pivot.left),
+                                    new GolfBallNode(right.golfBall, pivot.right, right.right));
+        }
+        return new GolfBallNode(golfBall, left, right);
+    }
+
+    // Returns:
+    //   - A String representation of the collection, including the color, year, and
+    //     description of each golf ball in sorted order.
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (GolfBall golfBall : this) {
+            result.append(golfBall.toString()).append('\n');
+        }
+        return result.toString();
+    }
+
+    // Behavior:
+    //   - Writes each golf ball in the collection to the given output in sorted order,
+    //     one per line, in the same form as toString. Golf balls are written as the
+    //     tree is walked, so no String holding the whole collection is ever built.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given output is null
+    //   - Throws an IOException if the output cannot be written
+    // Parameters:
+    //   - Appendable output - the output destination the golf balls are written to
+    public void writeSorted(Appendable output) throws IOException {
+        if (output == null) {
+            throw new IllegalArgumentException("Output cannot be null");
+        }
+        for (GolfBall golfBall : this) {
+            output.append(golfBall.toString()).append('\n');
+        }
+    }
+
+    // Returns:
+    //   - An iterator over the golf balls in the collection in sorted order. The
+    //     iterator sees the collection as it was when the iterator was created.
+    public Iterator<GolfBall> iterator() {
+        return new InOrderIterator(overallRoot);
+    }
+
+    // Returns:
+    //   - A Spliterator over the golf balls in the collection in sorted order. It knows
+    //     its exact size and splits in half by position using the subtree sizes, so
+    //     parallel streams divide the work evenly. Like the iterator, it sees the
+    //     collection as it was when the Spliterator was created.
+    public Spliterator<GolfBall> spliterator() {
+        return new TreeSpliterator(overallRoot, 0, size(overallRoot));
+    }
+
+    // Returns:
+    //   - A sequential stream of the golf balls in the collection in sorted order, which
+    //     can be made parallel with parallel()
+    public Stream<GolfBall> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    // Behavior:
+    //   - Saves the collection to the given output destination in a pre-order fashion.
+    //     Loading the file back with addAll reorders it in linear time, without sorting.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given output is null
+    // Parameters:
+    //   - PrintStream output - the output destination the collection will be saved to
+    public void save(PrintStream output) {
+        if (output == null) {
+            throw new IllegalArgumentException("Output cannot be null");
+        }
+        long start = System.nanoTime();
+        save(output, overallRoot);
+        if (metrics != null) {
+            metrics.recordSave(System.nanoTime() - start);
+        }
+    }
+
+    // Behavior:
+    //   - Saves the collection to the given output destination in a pre-order fashion
+    // Parameters:
+    //   - PrintStream output - the output destination the collection will be saved to
+    //   - GolfBallNode currentRoot - the current GolfBallNode having its golf ball
+    //     printed to the output destination
+    private void save(PrintStream output, GolfBallNode currentRoot) {
+        if (currentRoot != null) {
+            output.println(currentRoot.golfBall.getColor());
+            output.println(currentRoot.golfBall.getYear());
+            output.println(currentRoot.golfBall.getDescription());
+            save(output, currentRoot.left);
+            save(output, currentRoot.right);
+        }
+    }
+
+    // Behavior:
+    //   - Saves the collection to the given file as a compact binary snapshot, written
+    //     in sorted order so that it can be loaded back without sorting
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given path is null
+    //   - Throws an IOException if the file cannot be written
+    // Parameters:
+    //   - Path path - the file the snapshot will be saved to
+    public void saveSnapshot(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        long start = System.nanoTime();
+        GolfBallSnapshot.write(path, this);
+        if (metrics != null) {
+            metrics.recordSave(System.nanoTime() - start);
+        }
+    }
+
+    // Behavior:
+    //   - Adds every golf ball in the given binary snapshot file to the collection
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given path is null
+    //   - Throws an IOException if the file is not a valid snapshot or cannot be read
+    // Parameters:
+    //   - Path path - the snapshot file to load
+    public void loadSnapshot(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        checkWritable();
+        long start = System.nanoTime();
+        try (GolfBallSnapshot snapshot = GolfBallSnapshot.open(path)) {
+            List<GolfBall> golfBalls = new ArrayList<>(snapshot.size());
+            GolfBall next = snapshot.next();
+            while (next != null) {
+                golfBalls.add(next);
+                next = snapshot.next();
+            }
+            addAll(golfBalls);
+        }
+        if (metrics != null) {
+            metrics.recordLoad(System.nanoTime() - start);
+        }
+    }
+
+    // Returns:
+    //   - A list of golf balls in the collection that are of the given color, in
+    //     sorted order. If the query cache is enabled, the list is unmodifiable and
+    //     repeated calls return the same list until a golf ball of the color is added.
+    // Parameters:
+    //   - String color - the color of golf balls to include in the returned list
+    public List<GolfBall> filter(String color) {
+        long start = System.nanoTime();
+        int colorIndex = GolfBall.getColorIndex(color);
+        List<GolfBall> golfBalls = queryCache == null ? null
+                : queryCache.get(colorIndex, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        if (golfBalls == null) {
+            golfBalls = new ArrayList<>();
+            filter(colorIndex, overallRoot, golfBalls);
+            if (queryCache != null) {
+                golfBalls = queryCache.put(colorIndex, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                                           golfBalls);
+            }
+        }
+        if (metrics != null) {
+            metrics.recordFilter(System.nanoTime() - start);
+        }
+        return golfBalls;
+    }
+
+    // Returns:
+    //   - A list of the golf balls in the collection of the given color that were
+    //     obtained between the two given years, inclusive, in sorted order. If the query
+    //     cache is enabled, the list is unmodifiable and repeated calls return the same
+    //     list until a golf ball of the color is added.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given color is invalid
+    // Parameters:
+    //   - String color - the color of golf balls to include in the returned list
+    //   - int fromYear - the earliest year to include
+    //   - int toYear - the latest year to include
+    public List<GolfBall> filter(String color, int fromYear, int toYear) {
+        long start = System.nanoTime();
+        int colorIndex = checkColor(color);
+        List<GolfBall> golfBalls = queryCache == null ? null
+                : queryCache.get(colorIndex, fromYear, toYear);
+        if (golfBalls == null) {
+            golfBalls = new ArrayList<>(range(color, fromYear, toYear));
+            if (queryCache != null) {
+                golfBalls = queryCache.put(colorIndex, fromYear, toYear, golfBalls);
+            }
+        }
+        if (metrics != null) {
+            metrics.recordFilter(System.nanoTime() - start);
+        }
+        return golfBalls;
+    }
+
+    // Behavior:
+    //   - Adds all the golf balls in the collection of the specified color to a list
+    //     in sorted order
+    // Parameters:
+    //   - int targetColor - represents the color of the golf balls to add to the list
+    //   - GolfBallNode currentRoot - the current GolfBallNode having its golf ball's color
+    //     checked
+    //   - List<GolfBall> golfBalls - the list of golf balls of the specified color
+    private void filter(int targetColor, GolfBallNode currentRoot, List<GolfBall> golfBalls) {
+        if (currentRoot != null) {
+            int currColor = currentRoot.golfBall.getColorIndex();
             if (targetColor <= currColor) {
                 filter(targetColor, currentRoot.left, golfBalls);
             }
+            if (targetColor == currColor) {
+                golfBalls.add(currentRoot.golfBall);
+            }
             if (targetColor >= currColor) {
                 filter(targetColor, currentRoot.right, golfBalls);
             }
         }
     }
 
-    // Represents a golf ball within a collection
+    // Returns:
+    //   - An independent copy of this collection, made in O(1) time by sharing the
+    //     existing tree. Changes to either collection are not seen by the other. If the
+    //     query cache is enabled, the copy shares the cached results, and a change to
+    //     either collection only hides the results for the colors it touched.
+    public CollectionManager copy() {
+        return new CollectionManager(overallRoot, false, metrics, bloomFilter,
+                                     queryCache == null ? null : queryCache.copy());
+    }
+
+    // Returns:
+    //   - A read-only snapshot of this collection as it is now, made in O(1) time by
+    //     sharing the existing tree. The snapshot never changes, even while golf balls
+    //     keep being added to this collection, so it can be saved, exported, or
+    //     filtered at leisure, including from another thread.
+    public CollectionManager snapshot() {
+        if (readOnly) {
+            return this;
+        }
+        return new CollectionManager(overallRoot, true, metrics, bloomFilter,
+                                     queryCache == null ? null : queryCache.copy());
+    }
+
+    // Behavior:
+    //   - Starts recording metrics for this collection, if it is not already. Copies and
+    //     snapshots made afterward record into the same metrics. Until this is called,
+    //     no time is measured and nothing is recorded.
+    // Returns:
+    //   - The metrics this collection records into
+    public CollectionMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new CollectionMetrics();
+            recordShape();
+        }
+        return metrics;
+    }
+
+    // Returns:
+    //   - The metrics this collection records into, or null if metrics are not enabled
+    public CollectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Behavior:
+    //   - Keeps a Bloom filter of the collection's golf balls, with the given false
+    //     positive rate, so that contains answers most lookups for absent golf balls
+    //     without searching the tree. The filter is built from the current golf balls,
+    //     rebuilt whenever the tree is rebuilt by a bulk add or removeIf or outgrows it,
+    //     and shared by copies and snapshots made afterward. A golf ball removed singly
+    //     keeps its bits until the next rebuild, so lookups for it search the tree.
+    //     Calling this again replaces the filter.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the rate is not strictly between 0 and 1
+    // Returns:
+    //   - The filter, whose counters show how many lookups it answered on its own
+    // Parameters:
+    //   - double falsePositiveRate - the fraction of lookups for absent golf balls the
+    //     filter may pass on to the tree
+    public GolfBallBloomFilter enableBloomFilter(double falsePositiveRate) {
+        int size = size(overallRoot);
+        bloomFilter = GolfBallBloomFilter.of(this, 2 * size, falsePositiveRate);
+        return bloomFilter;
+    }
+
+    // Returns:
+    //   - The Bloom filter in front of contains, or null if none is enabled. The filter
+    //     may be replaced by a larger one as the collection grows.
+    public GolfBallBloomFilter getBloomFilter() {
+        return bloomFilter;
+    }
+
+    // Behavior:
+    //   - Caches the results of up to the given number of filter queries, evicting
+    //     roughly the least recently used when full. Adding a golf ball drops only the
+    //     cached results for its color. Copies and snapshots made afterward share the
+    //     cached results, the limit and the counters. Calling this again replaces the
+    //     cache with an empty one.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given limit is less than 1
+    // Returns:
+    //   - The cache, whose counters show how many queries it answered
+    // Parameters:
+    //   - int maxEntries - the most results to cache at once
+    public QueryCache enableQueryCache(int maxEntries) {
+        queryCache = new QueryCache(maxEntries);
+        return queryCache;
+    }
+
+    // Returns:
+    //   - The cache of filter results, or null if none is enabled
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    // Behavior:
+    //   - Records the current size and height of the tree, if metrics are enabled
+    private void recordShape() {
+        if (metrics != null) {
+            metrics.recordShape(size(overallRoot), height(overallRoot));
+        }
+    }
+
+    // Returns:
+    //   - true if this collection is a read-only snapshot
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // Behavior:
+    //   - Checks that this collection can be changed
+    // Exceptions:
+    //   - Throws an UnsupportedOperationException if this collection is a read-only
+    //     snapshot
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Snapshots cannot be changed");
+        }
+    }
+
+    // Returns:
+    //   - The number of golf balls in the collection
+    public int size() {
+        return size(overallRoot);
+    }
+
+    // Returns:
+    //   - The height of the collection's tree, where an empty collection has height 0
+    public int height() {
+        return height(overallRoot);
+    }
+
+    // Returns:
+    //   - The number of golf balls in the collection that come before the given golf
+    //     ball in sorted order. If the golf ball is in the collection, this is its
+    //     zero-based position.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to find the position of
+    public int rank(GolfBall golfBall) {
+        if (golfBall == null) {
+            throw new IllegalArgumentException("Golf ball cannot be null");
+        }
+        return countBelow(golfBall, false);
+    }
+
+    // Returns:
+    //   - The number of golf balls in the collection less than (or equal to, if
+    //     inclusive) the given golf ball
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to count up to
+    //   - boolean inclusive - true if a golf ball equal to the given one is counted
+    private int countBelow(GolfBall golfBall, boolean inclusive) {
+        int count = 0;
+        GolfBallNode currentRoot = overallRoot;
+        while (currentRoot != null) {
+            int comparison = golfBall.compareTo(currentRoot.golfBall);
+            if (comparison < 0 || (comparison == 0 && !inclusive)) {
+                currentRoot = currentRoot.left;
+            } else {
+                count += size(currentRoot.left) + 1;
+                currentRoot = currentRoot.right;
+            }
+        }
+        return count;
+    }
+
+    // Returns:
+    //   - The golf ball at the given zero-based position in sorted order
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given position is negative or not
+    //     less than the size of the collection
+    // Parameters:
+    //   - int index - the position of the golf ball to return
+    public GolfBall select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IllegalArgumentException("Index out of range: " + index);
+        }
+        GolfBallNode currentRoot = overallRoot;
+        while (true) {
+            int leftSize = size(currentRoot.left);
+            if (index < leftSize) {
+                currentRoot = currentRoot.left;
+            } else if (index == leftSize) {
+                return currentRoot.golfBall;
+            } else {
+                index -= leftSize + 1;
+                currentRoot = currentRoot.right;
+            }
+        }
+    }
+
+    // Returns:
+    //   - A list of up to the given number of golf balls in sorted order, starting at
+    //     the given zero-based position. Finding the start of the page takes O(log n)
+    //     time, so only the golf balls on the page are visited.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the offset or limit is negative
+    // Parameters:
+    //   - int offset - the position of the first golf ball on the page
+    //   - int limit - the largest number of golf balls to return
+    public List<GolfBall> page(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit cannot be negative");
+        }
+        List<GolfBall> golfBalls = new ArrayList<>();
+        Iterator<GolfBall> iterator = new InOrderIterator(overallRoot, offset);
+        while (golfBalls.size() < limit && iterator.hasNext()) {
+            golfBalls.add(iterator.next());
+        }
+        return golfBalls;
+    }
+
+    // Returns:
+    //   - The greatest golf ball in the collection less than or equal to the given golf
+    //     ball, or null if there is no such golf ball
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to search from
+    public GolfBall floor(GolfBall golfBall) {
+        return nearest(golfBall, true, true);
+    }
+
+    // Returns:
+    //   - The least golf ball in the collection greater than or equal to the given golf
+    //     ball, or null if there is no such golf ball
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to search from
+    public GolfBall ceiling(GolfBall golfBall) {
+        return nearest(golfBall, false, true);
+    }
+
+    // Returns:
+    //   - The greatest golf ball in the collection strictly less than the given golf
+    //     ball, or null if there is no such golf ball
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to search from
+    public GolfBall lower(GolfBall golfBall) {
+        return nearest(golfBall, true, false);
+    }
+
+    // Returns:
+    //   - The least golf ball in the collection strictly greater than the given golf
+    //     ball, or null if there is no such golf ball
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to search from
+    public GolfBall higher(GolfBall golfBall) {
+        return nearest(golfBall, false, false);
+    }
+
+    // Returns:
+    //   - The golf ball in the collection closest to the given golf ball on the given
+    //     side, or null if there is no such golf ball
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to search from
+    //   - boolean below - true to search for smaller golf balls, false for larger ones
+    //   - boolean inclusive - true if the given golf ball itself may be returned
+    private GolfBall nearest(GolfBall golfBall, boolean below, boolean inclusive) {
+        if (golfBall == null) {
+            throw new IllegalArgumentException("Golf ball cannot be null");
+        }
+        GolfBall best = null;
+        GolfBallNode currentRoot = overallRoot;
+        while (currentRoot != null) {
+            int comparison = golfBall.compareTo(currentRoot.golfBall);
+            if (comparison == 0 && inclusive) {
+                return currentRoot.golfBall;
+            } else if (below ? comparison > 0 : comparison < 0) {
+                best = currentRoot.golfBall;
+                currentRoot = below ? currentRoot.right : currentRoot.left;
+            } else {
+                currentRoot = below ? currentRoot.left : currentRoot.right;
+            }
+        }
+        return best;
+    }
+
+    // Returns:
+    //   - A view of the golf balls in the collection between the two given golf balls
+    //     in sorted order. The view reflects later changes to the collection and cannot
+    //     be modified itself. Finding the start of the view takes O(log n) time, and
+    //     nothing is copied.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if either golf ball is null
+    // Parameters:
+    //   - GolfBall from - the low end of the view
+    //   - boolean fromInclusive - true if the low end is included in the view
+    //   - GolfBall to - the high end of the view
+    //   - boolean toInclusive - true if the high end is included in the view
+    public SortedSet<GolfBall> subSet(GolfBall from, boolean fromInclusive,
+                                      GolfBall to, boolean toInclusive) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Golf balls cannot be null");
+        }
+        return new RangeView(from, fromInclusive, to, toInclusive);
+    }
+
+    // Returns:
+    //   - A view of the golf balls in the collection less than (or equal to, if
+    //     inclusive) the given golf ball, in sorted order
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Parameters:
+    //   - GolfBall to - the high end of the view
+    //   - boolean inclusive - true if the high end is included in the view
+    public SortedSet<GolfBall> headSet(GolfBall to, boolean inclusive) {
+        if (to == null) {
+            throw new IllegalArgumentException("Golf ball cannot be null");
+        }
+        return new RangeView(null, false, to, inclusive);
+    }
+
+    // Returns:
+    //   - A view of the golf balls in the collection greater than (or equal to, if
+    //     inclusive) the given golf ball, in sorted order
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Parameters:
+    //   - GolfBall from - the low end of the view
+    //   - boolean inclusive - true if the low end is included in the view
+    public SortedSet<GolfBall> tailSet(GolfBall from, boolean inclusive) {
+        if (from == null) {
+            throw new IllegalArgumentException("Golf ball cannot be null");
+        }
+        return new RangeView(from, inclusive, null, false);
+    }
+
+    // Returns:
+    //   - A view of the golf balls in the collection of the given color that were
+    //     obtained between the two given years, inclusive, in sorted order
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given color is invalid
+    // Parameters:
+    //   - String color - the color of golf balls to include in the view
+    //   - int fromYear - the earliest year to include
+    //   - int toYear - the latest year to include
+    public SortedSet<GolfBall> range(String color, int fromYear, int toYear) {
+        GolfBall from = new GolfBall(color, fromYear, "");
+        if (toYear < Integer.MAX_VALUE) {
+            return new RangeView(from, true, new GolfBall(color, toYear + 1, ""), false);
+        }
+        int nextColor = from.getColorIndex() + 1;
+        if (nextColor == GolfBall.getColorCount()) {
+            return new RangeView(from, true, null, false);
+        }
+        GolfBall to = new GolfBall(GolfBall.getColorName(nextColor), Integer.MIN_VALUE, "");
+        return new RangeView(from, true, to, false);
+    }
+
+    // Returns:
+    //   - A map from each color in the collection to the number of golf balls of that
+    //     color, in rainbow order. Each count is found from the subtree sizes in
+    //     O(log n) time, without visiting the golf balls.
+    public Map<String, Integer> countByColor() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        int below = 0;
+        for (int color = 0; color < GolfBall.getColorCount(); color++) {
+            int through = countColorsBelow(color + 1);
+            if (through > below) {
+                counts.put(GolfBall.getColorName(color), through - below);
+            }
+            below = through;
+        }
+        return counts;
+    }
+
+    // Returns:
+    //   - A map from each year in the collection to the number of golf balls obtained
+    //     that year, in increasing order of year. Large subtrees are counted in
+    //     parallel on the common fork-join pool and their counts are then combined.
+    public SortedMap<Integer, Integer> countByYear() {
+        return new TreeMap<>(ForkJoinPool.commonPool().invoke(new YearCountTask(overallRoot)));
+    }
+
+    // Returns:
+    //   - The earliest year of any golf ball of the given color, or null if there are
+    //     none, found in O(log n) time
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given color is invalid
+    // Parameters:
+    //   - String color - the color to look at
+    public Integer minYear(String color) {
+        int target = checkColor(color);
+        GolfBall first = null;
+        GolfBallNode currentRoot = overallRoot;
+        while (currentRoot != null) {
+            if (currentRoot.golfBall.getColorIndex() >= target) {
+                first = currentRoot.golfBall;
+                currentRoot = currentRoot.left;
+            } else {
+                currentRoot = currentRoot.right;
+            }
+        }
+        return first != null && first.getColorIndex() == target ? first.getYear() : null;
+    }
+
+    // Returns:
+    //   - The latest year of any golf ball of the given color, or null if there are
+    //     none, found in O(log n) time
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given color is invalid
+    // Parameters:
+    //   - String color - the color to look at
+    public Integer maxYear(String color) {
+        int target = checkColor(color);
+        GolfBall last = null;
+        GolfBallNode currentRoot = overallRoot;
+        while (currentRoot != null) {
+            if (currentRoot.golfBall.getColorIndex() <= target) {
+                last = currentRoot.golfBall;
+                currentRoot = currentRoot.right;
+            } else {
+                currentRoot = currentRoot.left;
+            }
+        }
+        return last != null && last.getColorIndex() == target ? last.getYear() : null;
+    }
+
+    // Returns:
+    //   - The index of the given color
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given color is invalid
+    // Parameters:
+    //   - String color - the color to look up
+    private static int checkColor(String color) {
+        int index = GolfBall.getColorIndex(color);
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid color: " + color);
+        }
+        return index;
+    }
+
+    // Returns:
+    //   - The number of golf balls in the collection whose color comes before the color
+    //     with the given index
+    // Parameters:
+    //   - int colorIndex - the index of the color to count below
+    private int countColorsBelow(int colorIndex) {
+        int count = 0;
+        GolfBallNode currentRoot = overallRoot;
+        while (currentRoot != null) {
+            if (currentRoot.golfBall.getColorIndex() < colorIndex) {
+                count += size(currentRoot.left) + 1;
+                currentRoot = currentRoot.right;
+            } else {
+                currentRoot = currentRoot.left;
+            }
+        }
+        return count;
+    }
+
+    // A read-only, live view of the golf balls in the collection between two optional
+    // bounds. A null bound means the view is unbounded on that side.
+    private class RangeView extends AbstractSet<GolfBall> implements SortedSet<GolfBall> {
+        private final GolfBall from;
+        private final boolean fromInclusive;
+        private final GolfBall to;
+        private final boolean toInclusive;
+
+        // Behavior:
+        //   - Creates a view between the given bounds
+        // Parameters:
+        //   - GolfBall from - the low end of the view, or null if unbounded
+        //   - boolean fromInclusive - true if the low end is included in the view
+        //   - GolfBall to - the high end of the view, or null if unbounded
+        //   - boolean toInclusive - true if the high end is included in the view
+        public RangeView(GolfBall from, boolean fromInclusive, GolfBall to,
+                         boolean toInclusive) {
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+
+        // Returns:
+        //   - An iterator over the golf balls in this view in sorted order
+        public Iterator<GolfBall> iterator() {
+            return new InOrderIterator(overallRoot, from, fromInclusive, to, toInclusive);
+        }
+
+        // Returns:
+        //   - The number of golf balls in this view, found in O(log n) time from the
+        //     positions of its bounds
+        public int size() {
+            int end = to == null ? CollectionManager.this.size() : countBelow(to, toInclusive);
+            int start = from == null ? 0 : countBelow(from, !fromInclusive);
+            return Math.max(0, end - start);
+        }
+
+        // Returns:
+        //   - true if this view has no golf balls
+        public boolean isEmpty() {
+            return !iterator().hasNext();
+        }
+
+        // Returns:
+        //   - true if the given object is a golf ball within this view
+        // Parameters:
+        //   - Object o - the object to look for
+        public boolean contains(Object o) {
+            if (!(o instanceof GolfBall)) {
+                return false;
+            }
+            GolfBall golfBall = (GolfBall) o;
+            return inRange(golfBall) && CollectionManager.this.contains(golfBall);
+        }
+
+        // Returns:
+        //   - null, since golf balls are kept in their natural order
+        public Comparator<? super GolfBall> comparator() {
+            return null;
+        }
+
+        // Exceptions:
+        //   - Throws a NoSuchElementException if this view is empty
+        // Returns:
+        //   - The smallest golf ball in this view
+        public GolfBall first() {
+            return iterator().next();
+        }
+
+        // Exceptions:
+        //   - Throws a NoSuchElementException if this view is empty
+        // Returns:
+        //   - The largest golf ball in this view
+        public GolfBall last() {
+            GolfBall last = null;
+            if (to != null) {
+                last = nearest(to, true, toInclusive);
+            } else if (overallRoot != null) {
+                GolfBallNode currentRoot = overallRoot;
+                while (currentRoot.right != null) {
+                    currentRoot = currentRoot.right;
+                }
+                last = currentRoot.golfBall;
+            }
+            if (last == null || !inRange(last)) {
+                throw new NoSuchElementException();
+            }
+            return last;
+        }
+
+        // Returns:
+        //   - A view of the golf balls in this view from the first given golf ball,
+        //     inclusive, to the second, exclusive
+        // Parameters:
+        //   - GolfBall fromElement - the low end of the new view
+        //   - GolfBall toElement - the high end of the new view
+        public SortedSet<GolfBall> subSet(GolfBall fromElement, GolfBall toElement) {
+            return headSet(toElement).tailSet(fromElement);
+        }
+
+        // Returns:
+        //   - A view of the golf balls in this view less than the given golf ball
+        // Parameters:
+        //   - GolfBall toElement - the high end of the new view
+        public SortedSet<GolfBall> headSet(GolfBall toElement) {
+            if (toElement == null) {
+                throw new IllegalArgumentException("Golf ball cannot be null");
+            }
+            if (to != null && to.compareTo(toElement) < 0) {
+                return new RangeView(from, fromInclusive, to, toInclusive);
+            }
+            return new RangeView(from, fromInclusive, toElement, false);
+        }
+
+        // Returns:
+        //   - A view of the golf balls in this view greater than or equal to the given
+        //     golf ball
+        // Parameters:
+        //   - GolfBall fromElement - the low end of the new view
+        public SortedSet<GolfBall> tailSet(GolfBall fromElement) {
+            if (fromElement == null) {
+                throw new IllegalArgumentException("Golf ball cannot be null");
+            }
+            if (from != null && from.compareTo(fromElement) >= 0) {
+                return new RangeView(from, fromInclusive, to, toInclusive);
+            }
+            return new RangeView(fromElement, true, to, toInclusive);
+        }
+
+        // Returns:
+        //   - true if the given golf ball lies between the bounds of this view
+        // Parameters:
+        //   - GolfBall golfBall - the golf ball to check
+        private boolean inRange(GolfBall golfBall) {
+            if (from != null) {
+                int comparison = golfBall.compareTo(from);
+                if (comparison < 0 || (comparison == 0 && !fromInclusive)) {
+                    return false;
+                }
+            }
+            return !InOrderIterator.pastEnd(golfBall, to, toInclusive);
+        }
+    }
+
+    // Iterates over the golf balls in a tree in sorted order without recursion, keeping
+    // only the path from the root to the next golf ball on an explicit stack.
+    private static class InOrderIterator implements Iterator<GolfBall> {
+        private final GolfBallNode[] stack;
+        private final GolfBall to;
+        private final boolean toInclusive;
+        private int depth;
+
+        // Behavior:
+        //   - Creates an iterator positioned at the smallest golf ball in the given tree
+        // Parameters:
+        //   - GolfBallNode overallRoot - the root of the tree to iterate over
+        public InOrderIterator(GolfBallNode overallRoot) {
+            this(overallRoot, null, false, null, false);
+        }
+
+        // Behavior:
+        //   - Creates an iterator positioned at the golf ball with the given zero-based
+        //     position in the given tree, found using the subtree sizes
+        // Parameters:
+        //   - GolfBallNode overallRoot - the root of the tree to iterate over
+        //   - int index - the position of the first golf ball to return
+        public InOrderIterator(GolfBallNode overallRoot, int index) {
+            this.stack = new GolfBallNode[MAX_HEIGHT];
+            this.to = null;
+            this.toInclusive = false;
+            this.depth = 0;
+            GolfBallNode currentRoot = overallRoot;
+            while (currentRoot != null) {
+                int leftSize = size(currentRoot.left);
+                if (index <= leftSize) {
+                    stack[depth] = currentRoot;
+                    depth++;
+                    if (index == leftSize) {
+                        break;
+                    }
+                    currentRoot = currentRoot.left;
+                } else {
+                    index -= leftSize + 1;
+                    currentRoot = currentRoot.right;
+                }
+            }
+        }
+
+        // Behavior:
+        //   - Creates an iterator over the golf balls in the given tree between the given
+        //     bounds, positioned at the smallest golf ball in range. Finding that golf
+        //     ball takes a single walk down the tree.
+        // Parameters:
+        //   - GolfBallNode overallRoot - the root of the tree to iterate over
+        //   - GolfBall from - the low end of the range, or null if unbounded
+        //   - boolean fromInclusive - true if the low end is included in the range
+        //   - GolfBall to - the high end of the range, or null if unbounded
+        //   - boolean toInclusive - true if the high end is included in the range
+        public InOrderIterator(GolfBallNode overallRoot, GolfBall from, boolean fromInclusive,
+                               GolfBall to, boolean toInclusive) {
+            this.stack = new GolfBallNode[MAX_HEIGHT];
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.depth = 0;
+            if (from == null) {
+                pushLeft(overallRoot);
+            } else {
+                GolfBallNode currentRoot = overallRoot;
+                while (currentRoot != null) {
+                    int comparison = currentRoot.golfBall.compareTo(from);
+                    if (comparison > 0 || (comparison == 0 && fromInclusive)) {
+                        stack[depth] = currentRoot;
+                        depth++;
+                        currentRoot = currentRoot.left;
+                    } else {
+                        currentRoot = currentRoot.right;
+                    }
+                }
+            }
+        }
+
+        // Returns:
+        //   - true if there are more golf balls to iterate over
+        public boolean hasNext() {
+            return depth > 0 && !pastEnd(stack[depth - 1].golfBall, to, toInclusive);
+        }
+
+        // Exceptions:
+        //   - Throws a NoSuchElementException if there are no more golf balls
+        // Returns:
+        //   - The next golf ball in sorted order
+        public GolfBall next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            depth--;
+            GolfBallNode currentRoot = stack[depth];
+            pushLeft(currentRoot.right);
+            return currentRoot.golfBall;
+        }
+
+        // Returns:
+        //   - true if the given golf ball lies beyond the given high end of a range
+        // Parameters:
+        //   - GolfBall golfBall - the golf ball to check
+        //   - GolfBall to - the high end of the range, or null if unbounded
+        //   - boolean toInclusive - true if the high end is included in the range
+        public static boolean pastEnd(GolfBall golfBall, GolfBall to, boolean toInclusive) {
+            if (to == null) {
+                return false;
+            }
+            int comparison = golfBall.compareTo(to);
+            return comparison > 0 || (comparison == 0 && !toInclusive);
+        }
+
+        // Behavior:
+        //   - Pushes the given node and all of its left descendants onto the stack
+        // Parameters:
+        //   - GolfBallNode currentRoot - the first node to push
+        private void pushLeft(GolfBallNode currentRoot) {
+            while (currentRoot != null) {
+                stack[depth] = currentRoot;
+                depth++;
+                currentRoot = currentRoot.left;
+            }
+        }
+    }
+
+    // Splits the golf balls in a tree by position. Each Spliterator covers a range of
+    // positions, and splitting hands the first half of the range to a new Spliterator.
+    // Iteration starts lazily, with a single walk down to the first position.
+    private static class TreeSpliterator implements Spliterator<GolfBall> {
+        private final GolfBallNode overallRoot;
+        private int from;
+        private final int to;
+        private InOrderIterator iterator;
+
+        // Behavior:
+        //   - Creates a Spliterator over the golf balls at the given positions
+        // Parameters:
+        //   - GolfBallNode overallRoot - the root of the tree
+        //   - int from - the position of the first golf ball
+        //   - int to - one past the position of the last golf ball
+        public TreeSpliterator(GolfBallNode overallRoot, int from, int to) {
+            this.overallRoot = overallRoot;
+            this.from = from;
+            this.to = to;
+            this.iterator = null;
+        }
+
+        // Behavior:
+        //   - Passes the next golf ball to the given action, if there is one
+        // Returns:
+        //   - true if there was a golf ball
+        // Parameters:
+        //   - Consumer<? super GolfBall> action - the action to perform
+        public boolean tryAdvance(Consumer<? super GolfBall> action) {
+            if (from >= to) {
+                return false;
+            }
+            if (iterator == null) {
+                iterator = new InOrderIterator(overallRoot, from);
+            }
+            from++;
+            action.accept(iterator.next());
+            return true;
+        }
+
+        // Behavior:
+        //   - Passes each remaining golf ball to the given action
+        // Parameters:
+        //   - Consumer<? super GolfBall> action - the action to perform
+        public void forEachRemaining(Consumer<? super GolfBall> action) {
+            while (tryAdvance(action)) {
+            }
+        }
+
+        // Behavior:
+        //   - Gives away the first half of the remaining golf balls, if iteration has
+        //     not started and there are enough of them to be worth splitting
+        // Returns:
+        //   - A Spliterator over the first half, or null if this one cannot be split
+        public Spliterator<GolfBall> trySplit() {
+            if (iterator != null || to - from < 2) {
+                return null;
+            }
+            int middle = (from + to) >>> 1;
+            Spliterator<GolfBall> firstHalf = new TreeSpliterator(overallRoot, from, middle);
+            from = middle;
+            return firstHalf;
+        }
+
+        // Returns:
+        //   - The exact number of golf balls remaining
+        public long estimateSize() {
+            return to - from;
+        }
+
+        // Returns:
+        //   - The characteristics of this Spliterator
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL | SIZED | SUBSIZED | IMMUTABLE;
+        }
+
+        // Returns:
+        //   - null, since golf balls are in their natural order
+        public Comparator<? super GolfBall> getComparator() {
+            return null;
+        }
+    }
+
+    // Counts the golf balls in a subtree by year, forking a task for the left subtree
+    // while counting the right one, until subtrees are small enough to count directly.
+    @SuppressWarnings("serial")
+    private static class YearCountTask extends RecursiveTask<Map<Integer, Integer>> {
+        private final GolfBallNode currentRoot;
+
+        // Behavior:
+        //   - Creates a task that counts the golf balls in the given subtree
+        // Parameters:
+        //   - GolfBallNode currentRoot - the root of the subtree
+        public YearCountTask(GolfBallNode currentRoot) {
+            this.currentRoot = currentRoot;
+        }
+
+        // Returns:
+        //   - A map from each year in the subtree to the number of golf balls from it
+        protected Map<Integer, Integer> compute() {
+            if (size(currentRoot) < PARALLEL_THRESHOLD) {
+                Map<Integer, Integer> counts = new HashMap<>();
+                count(currentRoot, counts);
+                return counts;
+            }
+            YearCountTask left = new YearCountTask(currentRoot.left);
+            left.fork();
+            Map<Integer, Integer> counts = new YearCountTask(currentRoot.right).compute();
+            counts.merge(currentRoot.golfBall.getYear(), 1, Integer::sum);
+            for (Map.Entry<Integer, Integer> entry : left.join().entrySet()) {
+                counts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+            return counts;
+        }
+
+        // Behavior:
+        //   - Adds the golf balls in the given subtree to the given counts
+        // Parameters:
+        //   - GolfBallNode currentRoot - the root of the subtree
+        //   - Map<Integer, Integer> counts - the counts by year
+        private static void count(GolfBallNode currentRoot, Map<Integer, Integer> counts) {
+            if (currentRoot != null) {
+                count(currentRoot.left, counts);
+                counts.merge(currentRoot.golfBall.getYear(), 1, Integer::sum);
+                count(currentRoot.right, counts);
+            }
+        }
+    }
+
+    // Represents a golf ball within a collection. Nodes are immutable, so a subtree can
+    // safely be shared between several versions of a collection.
     private static class GolfBallNode {
         public final GolfBall golfBall;
-        public GolfBallNode left;
-        public GolfBallNode right;
+        public final GolfBallNode left;
+        public final GolfBallNode right;
+        public final int height;
+        public final int size;
 
         // Behavior:
-        //   - Creates a new GolfBallNode that represents the given golf ball and has
-        //     no children.
+        //   - Creates a new GolfBallNode that represents the given golf ball and has the
+        //     given children, computing its height and subtree size from them.
         // Parameters:
         //   - GolfBall golfBall - the golf ball represented by this node
-        public GolfBallNode(GolfBall golfBall) {
+        //   - GolfBallNode left - the left child of this node, or null if it has none
+        //   - GolfBallNode right - the right child of this node, or null if it has none
+        public GolfBallNode(GolfBall golfBall, GolfBallNode left, GolfBallNode right) {
             this.golfBall = golfBall;
-            this.left = null;
-            this.right = null;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
         }
     }
 }
@@ -0,0 +1,307 @@
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+
+// Records how a collection of golf balls is used and how it performs: operation counts,
+// latency histograms for add, contains, and filter, the comparisons made per lookup,
+// the size and height of the tree, and the time spent saving and loading. Recording
+// only touches striped counters, so it is cheap and safe to share between threads. The
+// same numbers can be read directly, as a snapshot map, or over JMX once registered.
+public class CollectionMetrics implements CollectionMetricsMBean {
+    private static final String DOMAIN = "collection-manager";
+
+    private final LatencyHistogram addLatency;
+    private final LatencyHistogram containsLatency;
+    private final LatencyHistogram filterLatency;
+    private final LongAdder comparisons;
+    private final LongAdder saveCount;
+    private final LongAdder saveNanos;
+    private final LongAdder loadCount;
+    private final LongAdder loadNanos;
+    private volatile int size;
+    private volatile int height;
+    private ObjectName registeredName;
+
+    // Behavior:
+    //   - Creates a new set of metrics with every count at zero
+    public CollectionMetrics() {
+        this.addLatency = new LatencyHistogram();
+        this.containsLatency = new LatencyHistogram();
+        this.filterLatency = new LatencyHistogram();
+        this.comparisons = new LongAdder();
+        this.saveCount = new LongAdder();
+        this.saveNanos = new LongAdder();
+        this.loadCount = new LongAdder();
+        this.loadNanos = new LongAdder();
+    }
+
+    // Behavior:
+    //   - Records one add call
+    // Parameters:
+    //   - long nanos - how long the call took
+    public void recordAdd(long nanos) {
+        addLatency.record(nanos);
+    }
+
+    // Behavior:
+    //   - Records one contains call
+    // Parameters:
+    //   - long nanos - how long the call took
+    //   - int lookupComparisons - the number of golf balls compared during the lookup
+    public void recordContains(long nanos, int lookupComparisons) {
+        containsLatency.record(nanos);
+        comparisons.add(lookupComparisons);
+    }
+
+    // Behavior:
+    //   - Records one filter call
+    // Parameters:
+    //   - long nanos - how long the call took
+    public void recordFilter(long nanos) {
+        filterLatency.record(nanos);
+    }
+
+    // Behavior:
+    //   - Records one save
+    // Parameters:
+    //   - long nanos - how long the save took
+    public void recordSave(long nanos) {
+        saveCount.increment();
+        saveNanos.add(nanos);
+    }
+
+    // Behavior:
+    //   - Records one load
+    // Parameters:
+    //   - long nanos - how long the load took
+    public void recordLoad(long nanos) {
+        loadCount.increment();
+        loadNanos.add(nanos);
+    }
+
+    // Behavior:
+    //   - Records the shape of the tree after a change. Copies of a collection share
+    //     its metrics, so the shape reported is that of whichever copy changed last.
+    //     ConcurrentCollectionManager records the shape of its published version again
+    //     after every write, so a copy it discards is never what is reported.
+    // Parameters:
+    //   - int size - the number of golf balls in the collection
+    //   - int height - the height of the collection's tree
+    public void recordShape(int size, int height) {
+        this.size = size;
+        this.height = height;
+    }
+
+    // Returns:
+    //   - The number of add calls recorded
+    public long getAddCount() {
+        return addLatency.count();
+    }
+
+    // Returns:
+    //   - The number of contains calls recorded
+    public long getContainsCount() {
+        return containsLatency.count();
+    }
+
+    // Returns:
+    //   - The number of filter calls recorded
+    public long getFilterCount() {
+        return filterLatency.count();
+    }
+
+    // Returns:
+    //   - The approximate median latency of add calls, in nanoseconds
+    public long getAddLatencyP50Nanos() {
+        return addLatency.percentile(0.50);
+    }
+
+    // Returns:
+    //   - The approximate 99th percentile latency of add calls, in nanoseconds
+    public long getAddLatencyP99Nanos() {
+        return addLatency.percentile(0.99);
+    }
+
+    // Returns:
+    //   - The approximate median latency of contains calls, in nanoseconds
+    public long getContainsLatencyP50Nanos() {
+        return containsLatency.percentile(0.50);
+    }
+
+    // Returns:
+    //   - The approximate 99th percentile latency of contains calls, in nanoseconds
+    public long getContainsLatencyP99Nanos() {
+        return containsLatency.percentile(0.99);
+    }
+
+    // Returns:
+    //   - The approximate median latency of filter calls, in nanoseconds
+    public long getFilterLatencyP50Nanos() {
+        return filterLatency.percentile(0.50);
+    }
+
+    // Returns:
+    //   - The approximate 99th percentile latency of filter calls, in nanoseconds
+    public long getFilterLatencyP99Nanos() {
+        return filterLatency.percentile(0.99);
+    }
+
+    // Returns:
+    //   - The average number of golf ball comparisons made per contains call
+    public double getAverageComparisonsPerLookup() {
+        long lookups = containsLatency.count();
+        return lookups == 0 ? 0 : (double) comparisons.sum() / lookups;
+    }
+
+    // Returns:
+    //   - The number of golf balls in the collection after its most recent change
+    public int getSize() {
+        return size;
+    }
+
+    // Returns:
+    //   - The height of the collection's tree after its most recent change
+    public int getHeight() {
+        return height;
+    }
+
+    // Returns:
+    //   - The number of saves recorded
+    public long getSaveCount() {
+        return saveCount.sum();
+    }
+
+    // Returns:
+    //   - The total time spent saving, in milliseconds
+    public double getSaveMillis() {
+        return saveNanos.sum() / 1e6;
+    }
+
+    // Returns:
+    //   - The number of loads recorded
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    // Returns:
+    //   - The total time spent loading, in milliseconds
+    public double getLoadMillis() {
+        return loadNanos.sum() / 1e6;
+    }
+
+    // Returns:
+    //   - A read-only map from each metric's name to its current value, in a fixed order
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        values.put("addCount", getAddCount());
+        values.put("containsCount", getContainsCount());
+        values.put("filterCount", getFilterCount());
+        values.put("addLatencyP50Nanos", getAddLatencyP50Nanos());
+        values.put("addLatencyP99Nanos", getAddLatencyP99Nanos());
+        values.put("containsLatencyP50Nanos", getContainsLatencyP50Nanos());
+        values.put("containsLatencyP99Nanos", getContainsLatencyP99Nanos());
+        values.put("filterLatencyP50Nanos", getFilterLatencyP50Nanos());
+        values.put("filterLatencyP99Nanos", getFilterLatencyP99Nanos());
+        values.put("averageComparisonsPerLookup", getAverageComparisonsPerLookup());
+        values.put("size", getSize());
+        values.put("height", getHeight());
+        values.put("saveCount", getSaveCount());
+        values.put("saveMillis", getSaveMillis());
+        values.put("loadCount", getLoadCount());
+        values.put("loadMillis", getLoadMillis());
+        return Collections.unmodifiableMap(values);
+    }
+
+    // Behavior:
+    //   - Registers these metrics with the platform MBean server under the name
+    //     collection-manager:type=CollectionMetrics,name=<name>
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given name is null or these metrics
+    //     are already registered
+    //   - Throws an IllegalStateException if the MBean server rejects the registration
+    // Parameters:
+    //   - String name - the name that identifies the collection
+    public synchronized void register(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+        if (registeredName != null) {
+            throw new IllegalArgumentException("Metrics are already registered");
+        }
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN, new Hashtable<>(Map.of(
+                    "type", "CollectionMetrics", "name", ObjectName.quote(name))));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            registeredName = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register metrics", e);
+        }
+    }
+
+    // Behavior:
+    //   - Removes these metrics from the platform MBean server, if they are registered
+    // Exceptions:
+    //   - Throws an IllegalStateException if the MBean server rejects the removal
+    public synchronized void unregister() {
+        if (registeredName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            } catch (JMException e) {
+                throw new IllegalStateException("Could not unregister metrics", e);
+            }
+            registeredName = null;
+        }
+    }
+
+    // Counts latencies in buckets by powers of two of nanoseconds, so recording one is a
+    // single counter increment
+    private static class LatencyHistogram {
+        private final AtomicLongArray buckets;
+
+        // Behavior:
+        //   - Creates an empty histogram
+        public LatencyHistogram() {
+            this.buckets = new AtomicLongArray(64);
+        }
+
+        // Behavior:
+        //   - Records one latency
+        // Parameters:
+        //   - long nanos - the latency to record
+        public void record(long nanos) {
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(1, nanos)));
+        }
+
+        // Returns:
+        //   - The number of latencies recorded
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        // Returns:
+        //   - The upper bound of the bucket holding the given fraction of latencies, or
+        //     0 if nothing has been recorded
+        // Parameters:
+        //   - double fraction - the percentile to find, between 0 and 1
+        public long percentile(double fraction) {
+            long total = count();
+            if (total == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    return i == 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
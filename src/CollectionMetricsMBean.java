@@ -0,0 +1,68 @@
+// The management interface through which CollectionMetrics is exposed over JMX. Latency
+// percentiles are approximate: each is the upper bound of the power-of-two bucket of
+// nanoseconds that the percentile falls in.
+public interface CollectionMetricsMBean {
+    // Returns:
+    //   - The number of add calls recorded
+    long getAddCount();
+
+    // Returns:
+    //   - The number of contains calls recorded
+    long getContainsCount();
+
+    // Returns:
+    //   - The number of filter calls recorded
+    long getFilterCount();
+
+    // Returns:
+    //   - The approximate median latency of add calls, in nanoseconds
+    long getAddLatencyP50Nanos();
+
+    // Returns:
+    //   - The approximate 99th percentile latency of add calls, in nanoseconds
+    long getAddLatencyP99Nanos();
+
+    // Returns:
+    //   - The approximate median latency of contains calls, in nanoseconds
+    long getContainsLatencyP50Nanos();
+
+    // Returns:
+    //   - The approximate 99th percentile latency of contains calls, in nanoseconds
+    long getContainsLatencyP99Nanos();
+
+    // Returns:
+    //   - The approximate median latency of filter calls, in nanoseconds
+    long getFilterLatencyP50Nanos();
+
+    // Returns:
+    //   - The approximate 99th percentile latency of filter calls, in nanoseconds
+    long getFilterLatencyP99Nanos();
+
+    // Returns:
+    //   - The average number of golf ball comparisons made per contains call
+    double getAverageComparisonsPerLookup();
+
+    // Returns:
+    //   - The number of golf balls in the collection after its most recent change
+    int getSize();
+
+    // Returns:
+    //   - The height of the collection's tree after its most recent change
+    int getHeight();
+
+    // Returns:
+    //   - The number of saves recorded
+    long getSaveCount();
+
+    // Returns:
+    //   - The total time spent saving, in milliseconds
+    double getSaveMillis();
+
+    // Returns:
+    //   - The number of loads recorded
+    long getLoadCount();
+
+    // Returns:
+    //   - The total time spent loading, in milliseconds
+    double getLoadMillis();
+}
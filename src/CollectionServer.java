@@ -0,0 +1,275 @@
+import java.io.*;
+import java.lang.reflect.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Serves one shared, in-memory collection of golf balls to many local clients over a
+// line protocol on TCP, so that several processes can query the same warm collection
+// instead of each loading its own copy. Each connection gets its own thread. Readers
+// never block each other or writers, because the collection is a
+// ConcurrentCollectionManager.
+//
+// Each request is one line, and each response starts with a status line: either
+// "OK <n>" followed by n lines of results, or "ERROR <message>". Requests:
+//   add <color> <year> <description>        OK 0
+//   contains <color> <year> <description>   OK 1, then true or false
+//   filter <color>                          OK n, then each golf ball of the color
+//   range <color> <fromYear> <toYear>       OK n, then each golf ball in the range
+//   size                                    OK 1, then the number of golf balls
+//   save <name>                             OK 0, after saving in the save directory
+// Responses are flushed once no more pipelined requests are waiting, so a client may
+// send many requests before reading any responses.
+//
+// Saved files are always written to the save directory chosen when the server starts,
+// under a plain file name, so clients cannot overwrite other files on the server.
+//
+// Usage: java CollectionServer [port] [file to load] [save directory]
+// The file is watched while the server runs, and changes to it are applied to the
+// collection as they happen. Saved files go to the "saves" directory unless another is
+// given.
+public class CollectionServer implements Closeable {
+    public static final int DEFAULT_PORT = 7123;
+    public static final String DEFAULT_SAVE_DIRECTORY = "saves";
+
+    private final ConcurrentCollectionManager collection;
+    private final Path saveDirectory;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Set<Socket> openSockets;
+    private final Thread acceptor;
+
+    // Behavior:
+    //   - Creates a server for the given collection, listening on the loopback address
+    //     at the given port, that refuses save requests. Connections are not accepted
+    //     until start is called.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection is null or the
+    //     port is out of range
+    //   - Throws an IOException if the port cannot be bound
+    // Parameters:
+    //   - ConcurrentCollectionManager collection - the collection to serve
+    //   - int port - the port to listen on, or 0 for any free port
+    public CollectionServer(ConcurrentCollectionManager collection, int port)
+            throws IOException {
+        this(collection, port, null);
+    }
+
+    // Behavior:
+    //   - Creates a server for the given collection, listening on the loopback address
+    //     at the given port and saving files in the given directory, which is created
+    //     when the first file is saved. Connections are not accepted until start is
+    //     called.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection is null or the
+    //     port is out of range
+    //   - Throws an IOException if the port cannot be bound
+    // Parameters:
+    //   - ConcurrentCollectionManager collection - the collection to serve
+    //   - int port - the port to listen on, or 0 for any free port
+    //   - Path saveDirectory - the directory saved files go to, or null to refuse saves
+    public CollectionServer(ConcurrentCollectionManager collection, int port,
+                            Path saveDirectory) throws IOException {
+        if (collection == null) {
+            throw new IllegalArgumentException("Collection cannot be null");
+        }
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+        this.collection = collection;
+        this.saveDirectory = saveDirectory == null ? null
+                : saveDirectory.toAbsolutePath().normalize();
+        this.serverSocket = new ServerSocket(port, 256, InetAddress.getLoopbackAddress());
+        this.connections = newConnectionExecutor();
+        this.openSockets = ConcurrentHashMap.newKeySet();
+        this.acceptor = new Thread(this::acceptConnections, "collection-server-acceptor");
+        this.acceptor.setDaemon(true);
+    }
+
+    // Behavior:
+    //   - Starts a server on the command line, loading the collection from a file first
+    //     if one is given and watching the file for changes, and serves until the
+    //     process is stopped
+    // Exceptions:
+    //   - Throws an IOException if the file cannot be loaded or the port bound
+    // Parameters:
+    //   - String[] args - an optional port, an optional file to load and an optional
+    //     directory for saved files
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        ConcurrentCollectionManager shared = new ConcurrentCollectionManager();
+        if (args.length > 1) {
+            new CollectionWatcher(shared, Paths.get(args[1])).start();
+        }
+        Path saves = Paths.get(args.length > 2 ? args[2] : DEFAULT_SAVE_DIRECTORY);
+        CollectionServer server = new CollectionServer(shared, port, saves);
+        System.out.println("Serving " + shared.size() + " golf balls on port "
+                           + server.getPort());
+        server.acceptConnections();
+    }
+
+    // Behavior:
+    //   - Starts accepting connections in the background
+    public void start() {
+        acceptor.start();
+    }
+
+    // Returns:
+    //   - The port the server is listening on
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Behavior:
+    //   - Stops accepting connections and closes every open connection
+    // Exceptions:
+    //   - Throws an IOException if the listening socket cannot be closed
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : openSockets) {
+            socket.close();
+        }
+        connections.shutdownNow();
+    }
+
+    // Behavior:
+    //   - Accepts connections until the server is closed, handing each one to its own
+    //     thread
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                openSockets.add(socket);
+                connections.execute(() -> serve(socket));
+            } catch (IOException | RejectedExecutionException e) {
+                // The server was closed
+            }
+        }
+    }
+
+    // Behavior:
+    //   - Answers requests from the given connection until the client disconnects
+    // Parameters:
+    //   - Socket socket - the connection to serve
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader input = new BufferedReader(new InputStreamReader(
+                     socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer output = new BufferedWriter(new OutputStreamWriter(
+                     socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line = input.readLine();
+            while (line != null) {
+                respond(line.strip(), output);
+                if (!input.ready()) {
+                    output.flush();
+                }
+                line = input.readLine();
+            }
+        } catch (IOException e) {
+            // The client disconnected
+        } finally {
+            openSockets.remove(socket);
+        }
+    }
+
+    // Behavior:
+    //   - Runs one request and writes its response
+    // Exceptions:
+    //   - Throws an IOException if the response cannot be written
+    // Parameters:
+    //   - String request - the request line
+    //   - Writer output - where the response is written
+    private void respond(String request, Writer output) throws IOException {
+        String[] words = request.split("\\s+", 2);
+        String command = words[0].toLowerCase(Locale.ROOT);
+        String rest = words.length > 1 ? words[1] : "";
+        Collection<?> results;
+        try {
+            if (command.equals("add")) {
+                collection.add(GolfBall.parse(rest));
+                results = List.of();
+            } else if (command.equals("contains")) {
+                results = List.of(collection.contains(GolfBall.parse(rest)));
+            } else if (command.equals("filter")) {
+                results = collection.filter(rest);
+            } else if (command.equals("range")) {
+                String[] fields = rest.split("\\s+");
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("expected <color> <fromYear> <toYear>");
+                }
+                results = collection.range(fields[0], Integer.parseInt(fields[1]),
+                                           Integer.parseInt(fields[2]));
+            } else if (command.equals("size")) {
+                results = List.of(collection.size());
+            } else if (command.equals("save") && !rest.isEmpty()) {
+                Path path = savePath(rest);
+                if (path.toString().endsWith(".bin")) {
+                    collection.saveSnapshot(path);
+                } else {
+                    try (PrintStream file = new PrintStream(new BufferedOutputStream(
+                            Files.newOutputStream(path, LinkOption.NOFOLLOW_LINKS,
+                                                  StandardOpenOption.CREATE,
+                                                  StandardOpenOption.TRUNCATE_EXISTING,
+                                                  StandardOpenOption.WRITE)))) {
+                        collection.save(file);
+                        if (file.checkError()) {
+                            throw new IOException("Could not write " + rest);
+                        }
+                    }
+                }
+                results = List.of();
+            } else {
+                throw new IllegalArgumentException("unknown command \"" + words[0] + "\"");
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            output.append("ERROR ").append(String.valueOf(e.getMessage())).append('\n');
+            return;
+        }
+        output.append("OK ").append(String.valueOf(results.size())).append('\n');
+        for (Object result : results) {
+            output.append(result.toString()).append('\n');
+        }
+    }
+
+    // Behavior:
+    //   - Creates the save directory if it does not exist yet
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if saving is disabled or the given name is
+    //     not a plain file name
+    //   - Throws an IOException if the save directory cannot be created
+    // Returns:
+    //   - The path in the save directory that the given name refers to
+    // Parameters:
+    //   - String name - the file name given by the client
+    private Path savePath(String name) throws IOException {
+        if (saveDirectory == null) {
+            throw new IllegalArgumentException("saving is disabled on this server");
+        }
+        Path fileName = Paths.get(name);
+        if (fileName.isAbsolute() || fileName.getNameCount() != 1
+                || fileName.toString().equals("..") || fileName.toString().equals(".")) {
+            throw new IllegalArgumentException("save expects a plain file name");
+        }
+        Files.createDirectories(saveDirectory);
+        return saveDirectory.resolve(fileName);
+    }
+
+    // Returns:
+    //   - An executor that runs each connection on a virtual thread when the JVM has
+    //     them (Java 21 and later), or on its own platform thread otherwise
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "collection-server-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+// Keeps a shared collection up to date with a data file that other tools change. A
+// WatchService reports changes to the file, and each change is applied to the
+// collection in one atomic update, so readers never see a half-loaded file.
+//
+// Text files are expected to grow by having records appended. The watcher remembers
+// how far into the file it has read, along with a checksum of every byte before that
+// point, and on a change reads only the complete records appended since. Records
+// still being written are left for the next change. If the file shrank or any byte
+// before that point changed, the file was rewritten instead: it is read in full and
+// compared with its previous contents, and only the differences are applied. Binary
+// snapshots are always handled this way, since they are rewritten as a whole.
+// Checking the checksum costs one pass over the bytes already read, which is far
+// cheaper than parsing and diffing the records they hold.
+//
+// Golf balls added to the collection from elsewhere are left alone; only golf balls
+// that came from the file are ever removed.
+public class CollectionWatcher implements Closeable {
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final ConcurrentCollectionManager collection;
+    private final Path file;
+    private final boolean snapshot;
+    private CollectionManager loaded;
+    private long offset;
+    private int lineCount;
+    private long checksum;
+    private WatchService watchService;
+    private volatile Exception lastError;
+
+    // Behavior:
+    //   - Creates a watcher that keeps the given collection up to date with the given
+    //     file. Nothing is read until reload or start is called.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection or file is null
+    // Parameters:
+    //   - ConcurrentCollectionManager collection - the collection to update
+    //   - Path file - the text file or binary snapshot (ending in .bin) to watch
+    public CollectionWatcher(ConcurrentCollectionManager collection, Path file) {
+        if (collection == null || file == null) {
+            throw new IllegalArgumentException("Collection and file cannot be null");
+        }
+        this.collection = collection;
+        this.file = file.toAbsolutePath();
+        this.snapshot = file.toString().endsWith(".bin");
+        this.loaded = new CollectionManager();
+        this.offset = 0;
+        this.lineCount = 0;
+        this.checksum = 0;
+    }
+
+    // Behavior:
+    //   - Reads the file and applies every change since the last reload to the
+    //     collection. The first reload reads the whole file. A missing file is treated
+    //     as unchanged, since tools often replace a file by deleting and recreating it.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the file holds a malformed record, in
+    //     which case nothing is applied
+    //   - Throws an IOException if the file cannot be read
+    // Returns:
+    //   - The number of golf balls added to or removed from the collection's view of
+    //     the file
+    public synchronized int reload() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        if (snapshot) {
+            CollectionManager contents = new CollectionManager();
+            contents.loadSnapshot(file);
+            return replaceContents(contents);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            CRC32 crc = new CRC32();
+            if (size < offset || update(crc, channel, 0, offset) != checksum) {
+                CollectionManager contents = new CollectionManager();
+                contents.addAll(readRecords(channel, new CRC32(), 0, 0, size));
+                return replaceContents(contents);
+            }
+            List<GolfBall> appended = readRecords(channel, crc, offset, lineCount, size);
+            List<GolfBall> added = new ArrayList<>();
+            for (GolfBall golfBall : appended) {
+                if (!loaded.contains(golfBall)) {
+                    added.add(golfBall);
+                }
+            }
+            if (!added.isEmpty()) {
+                loaded.addAll(added);
+                collection.update(next -> next.addAll(added));
+            }
+            return added.size();
+        }
+    }
+
+    // Behavior:
+    //   - Reads the file, then watches it on a background thread and reloads it after
+    //     every change until the watcher is closed. Any exception while reloading is
+    //     kept for getLastError instead of stopping the thread, and the next change is
+    //     tried again.
+    // Exceptions:
+    //   - Throws an IllegalStateException if the watcher was already started
+    //   - Throws an IllegalArgumentException if the file holds a malformed record
+    //   - Throws an IOException if the file cannot be read or its directory watched
+    public synchronized void start() throws IOException {
+        if (watchService != null) {
+            throw new IllegalStateException("Watcher already started");
+        }
+        reload();
+        watchService = file.getFileSystem().newWatchService();
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                  StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread watcher = new Thread(this::watch, "collection-watcher-" + file.getFileName());
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    // Returns:
+    //   - The error from the most recent failed reload on the background thread, or
+    //     null if the most recent reload succeeded
+    public Exception getLastError() {
+        return lastError;
+    }
+
+    // Behavior:
+    //   - Stops watching the file
+    // Exceptions:
+    //   - Throws an IOException if the watch service cannot be closed
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    // Behavior:
+    //   - Waits for changes to the file and reloads it after each batch of events,
+    //     until the watch service is closed
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || file.getFileName().equals(event.context());
+                }
+                if (changed) {
+                    try {
+                        reload();
+                        lastError = null;
+                    } catch (IOException | RuntimeException e) {
+                        lastError = e;
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The watcher was closed
+        }
+    }
+
+    // Behavior:
+    //   - Makes the given golf balls the file's contents, applying only the differences
+    //     from its previous contents to the collection
+    // Returns:
+    //   - The number of golf balls added or removed
+    // Parameters:
+    //   - CollectionManager contents - every golf ball now in the file
+    private int replaceContents(CollectionManager contents) {
+        CollectionDiff diff = loaded.diff(contents);
+        loaded = contents;
+        if (!diff.isEmpty()) {
+            collection.update(next -> {
+                next.removeAll(diff.getMissing());
+                next.addAll(diff.getAdded());
+            });
+        }
+        return diff.getAdded().size() + diff.getMissing().size();
+    }
+
+    // Behavior:
+    //   - Reads every complete record between the given position and size, then moves
+    //     the offset past them and updates the line count to match. The bytes of those
+    //     records are added to the given checksum, which becomes the new checksum. A
+    //     record is complete once all three of its lines end in a newline. The bytes are
+    //     scanned in fixed-size chunks to find where the complete records end, then
+    //     streamed through a GolfBallReader, so files of any size are read in bounded
+    //     memory apart from the golf balls themselves.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if a record is malformed, in which case
+    //     the offset is not moved
+    //   - Throws an IOException if the file cannot be read
+    // Returns:
+    //   - The golf balls read, in file order
+    // Parameters:
+    //   - FileChannel channel - the open file
+    //   - CRC32 crc - the checksum of every byte before the given position
+    //   - long from - the position of the first record to read
+    //   - int linesBefore - the number of lines before that position
+    //   - long size - the size of the file
+    private List<GolfBall> readRecords(FileChannel channel, CRC32 crc, long from,
+                                       int linesBefore, long size) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        long end = from;
+        long records = 0;
+        int lines = 0;
+        long position = from;
+        while (position < size) {
+            chunk.clear();
+            chunk.limit((int) Math.min(CHUNK_SIZE, size - position));
+            int read = channel.read(chunk, position);
+            if (read < 0) {
+                break;
+            }
+            byte[] bytes = chunk.array();
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') {
+                    lines++;
+                    if (lines == 3) {
+                        lines = 0;
+                        records++;
+                        end = position + i + 1;
+                    }
+                }
+            }
+            position += read;
+        }
+        List<GolfBall> golfBalls = new ArrayList<>();
+        channel.position(from);
+        GolfBallReader reader = new GolfBallReader(channel, linesBefore);
+        for (long i = 0; i < records; i++) {
+            GolfBall next = reader.next();
+            if (next == null) {
+                throw new IOException("File shrank while being read: " + file);
+            }
+            golfBalls.add(next);
+        }
+        offset = end;
+        lineCount = Math.toIntExact(linesBefore + 3 * records);
+        checksum = update(crc, channel, from, end);
+        return golfBalls;
+    }
+
+    // Behavior:
+    //   - Adds the bytes of the file between the given positions to the given checksum,
+    //     reading them in fixed-size chunks
+    // Exceptions:
+    //   - Throws an IOException if the file cannot be read
+    // Returns:
+    //   - The updated value of the checksum
+    // Parameters:
+    //   - CRC32 crc - the checksum to update
+    //   - FileChannel channel - the open file
+    //   - long from - the position of the first byte to add
+    //   - long to - the position just past the last byte to add
+    private static long update(CRC32 crc, FileChannel channel, long from, long to)
+            throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        long position = from;
+        while (position < to) {
+            chunk.clear();
+            chunk.limit((int) Math.min(CHUNK_SIZE, to - position));
+            int read = channel.read(chunk, position);
+            if (read < 0) {
+                break;
+            }
+            chunk.flip();
+            crc.update(chunk);
+            position += read;
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,730 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// This class represents a collection of golf balls stored for a small memory footprint.
+// Instead of a GolfBall object and a tree node per golf ball, the collection keeps its
+// AVL tree as parallel arrays: a byte per golf ball for the color's index, an int for
+// the year, an int for the description, two ints for the child positions, and a byte
+// for the height. Each distinct description is stored once, as a run of characters in
+// a shared pool, no matter how many golf balls use it. GolfBall objects are only
+// created when golf balls are handed back to the caller.
+//
+// Golf balls are kept in the same sorted order as CollectionManager, and the two can be
+// converted with addAll and the iterator.
+public class CompactCollectionManager implements Iterable<GolfBall> {
+    private static final int MAX_HEIGHT = 64;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private byte[] colors;
+    private int[] years;
+    private int[] descriptions;
+    private int[] left;
+    private int[] right;
+    private byte[] heights;
+    private int size;
+    private int overallRoot;
+
+    private char[] pool;
+    private int poolSize;
+    private int[] descriptionStarts;
+    private int[] descriptionHashes;
+    private int descriptionCount;
+    private int[] descriptionTable;
+    private final int[] path;
+    private final boolean[] wentLeft;
+
+    // Behavior:
+    //   - Creates a new empty collection of golf balls.
+    public CompactCollectionManager() {
+        this.colors = new byte[INITIAL_CAPACITY];
+        this.years = new int[INITIAL_CAPACITY];
+        this.descriptions = new int[INITIAL_CAPACITY];
+        this.left = new int[INITIAL_CAPACITY];
+        this.right = new int[INITIAL_CAPACITY];
+        this.heights = new byte[INITIAL_CAPACITY];
+        this.size = 0;
+        this.overallRoot = NONE;
+        this.pool = new char[INITIAL_CAPACITY * 8];
+        this.poolSize = 0;
+        this.descriptionStarts = new int[INITIAL_CAPACITY + 1];
+        this.descriptionHashes = new int[INITIAL_CAPACITY];
+        this.descriptionCount = 0;
+        this.descriptionTable = new int[INITIAL_CAPACITY * 2];
+        this.path = new int[MAX_HEIGHT];
+        this.wentLeft = new boolean[MAX_HEIGHT];
+    }
+
+    // Behavior:
+    //   - Adds the given golf ball to the collection if it is not already in the
+    //     collection, preserving sorted order and rebalancing the tree on the way back
+    //     up from the insertion point
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Returns:
+    //   - true if the golf ball was added
+    //   - false if it was already in the collection
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to add to the collection
+    public boolean add(GolfBall golfBall) {
+        if (golfBall == null) {
+            throw new IllegalArgumentException("Golf ball cannot be null.");
+        }
+        int depth = 0;
+        int current = overallRoot;
+        while (current != NONE) {
+            int comparison = compare(golfBall, current);
+            if (comparison == 0) {
+                return false;
+            }
+            path[depth] = current;
+            wentLeft[depth] = comparison < 0;
+            depth++;
+            current = comparison < 0 ? left[current] : right[current];
+        }
+        int subtree = newNode(golfBall);
+        while (depth > 0) {
+            depth--;
+            int parent = path[depth];
+            if (wentLeft[depth]) {
+                left[parent] = subtree;
+            } else {
+                right[parent] = subtree;
+            }
+            subtree = balance(parent);
+        }
+        overallRoot = subtree;
+        return true;
+    }
+
+    // Behavior:
+    //   - Adds all of the given golf balls to the collection, skipping any that are
+    //     already present. The golf balls are sorted once and merged with the golf
+    //     balls already in the collection, and the tree is rebuilt perfectly balanced
+    //     in linear time.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection or any golf ball
+    //     in it is null
+    // Parameters:
+    //   - Collection<GolfBall> golfBalls - the golf balls to add to the collection
+    public void addAll(Collection<GolfBall> golfBalls) {
+        if (golfBalls == null) {
+            throw new IllegalArgumentException("Golf balls cannot be null.");
+        }
+        GolfBall[] added = golfBalls.toArray(new GolfBall[0]);
+        for (GolfBall golfBall : added) {
+            if (golfBall == null) {
+                throw new IllegalArgumentException("Golf ball cannot be null.");
+            }
+        }
+        int first = size;
+        int count = sortDistinct(added);
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            newNode(added[i]);
+        }
+        merge(first);
+    }
+
+    // Behavior:
+    //   - Adds every golf ball in the given binary snapshot file to the collection,
+    //     skipping any that are already present. The golf balls are stored as they are
+    //     read and merged into the tree once the whole snapshot has been verified, so
+    //     a snapshot that turns out to be corrupt leaves the collection unchanged.
+    //     Golf balls that are not in sorted order are sorted first.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given path is null
+    //   - Throws an IOException if the file is not a valid snapshot or cannot be read
+    // Parameters:
+    //   - Path path - the snapshot file to load
+    public void loadSnapshot(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        int first = size;
+        int pooled = poolSize;
+        int described = descriptionCount;
+        boolean sorted = true;
+        try (GolfBallSnapshot snapshot = GolfBallSnapshot.open(path)) {
+            ensureCapacity(snapshot.size());
+            for (GolfBall next = snapshot.next(); next != null; next = snapshot.next()) {
+                int node = newNode(next);
+                sorted &= node == first || compare(node - 1, node) < 0;
+            }
+        } catch (IOException | RuntimeException e) {
+            size = first;
+            poolSize = pooled;
+            descriptionCount = described;
+            rehash(descriptionTable.length);
+            throw e;
+        }
+        if (!sorted) {
+            GolfBall[] loaded = new GolfBall[size - first];
+            for (int i = 0; i < loaded.length; i++) {
+                loaded[i] = golfBall(first + i);
+            }
+            size = first;
+            int count = sortDistinct(loaded);
+            for (int i = 0; i < count; i++) {
+                newNode(loaded[i]);
+            }
+        }
+        merge(first);
+    }
+
+    // Behavior:
+    //   - Determines whether the collection contains the given golf ball, comparing it
+    //     against the stored fields directly so that no objects are created
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Returns:
+    //   - true if the given golf ball is in the collection
+    //   - false if the given golf ball is not in the collection
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to look for
+    public boolean contains(GolfBall golfBall) {
+        if (golfBall == null) {
+            throw new IllegalArgumentException("Golf ball cannot be null");
+        }
+        int current = overallRoot;
+        while (current != NONE) {
+            int comparison = compare(golfBall, current);
+            if (comparison == 0) {
+                return true;
+            }
+            current = comparison < 0 ? left[current] : right[current];
+        }
+        return false;
+    }
+
+    // Returns:
+    //   - A list of golf balls in the collection that are of the given color, in
+    //     sorted order
+    // Parameters:
+    //   - String color - the color of golf balls to include in the returned list
+    public List<GolfBall> filter(String color) {
+        int target = GolfBall.getColorIndex(color);
+        List<GolfBall> golfBalls = new ArrayList<>();
+        int[] stack = new int[MAX_HEIGHT];
+        int depth = 0;
+        int current = overallRoot;
+        while (current != NONE || depth > 0) {
+            if (current != NONE) {
+                if (target <= colors[current]) {
+                    stack[depth] = current;
+                    depth++;
+                    current = left[current];
+                } else {
+                    current = right[current];
+                }
+            } else {
+                depth--;
+                current = stack[depth];
+                if (colors[current] > target) {
+                    break;
+                }
+                golfBalls.add(golfBall(current));
+                current = right[current];
+            }
+        }
+        return golfBalls;
+    }
+
+    // Returns:
+    //   - The number of golf balls in the collection
+    public int size() {
+        return size;
+    }
+
+    // Returns:
+    //   - The number of distinct descriptions stored in the shared pool
+    public int descriptionCount() {
+        return descriptionCount;
+    }
+
+    // Returns:
+    //   - The approximate number of bytes held by the arrays backing the collection,
+    //     including spare capacity
+    public long memoryBytes() {
+        long perNode = 1 + 4 + 4 + 4 + 4 + 1;
+        return perNode * colors.length + 2L * pool.length
+                + 4L * (descriptionStarts.length + descriptionHashes.length
+                        + descriptionTable.length);
+    }
+
+    // Returns:
+    //   - An iterator over the golf balls in the collection in sorted order, creating
+    //     each GolfBall as it is returned
+    public Iterator<GolfBall> iterator() {
+        return new InOrderIterator();
+    }
+
+    // Behavior:
+    //   - Saves the collection to the given output destination in a pre-order fashion,
+    //     in the same format as CollectionManager
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given output is null
+    // Parameters:
+    //   - PrintStream output - the output destination the collection will be saved to
+    public void save(PrintStream output) {
+        if (output == null) {
+            throw new IllegalArgumentException("Output cannot be null");
+        }
+        int[] stack = new int[MAX_HEIGHT];
+        int depth = 0;
+        if (overallRoot != NONE) {
+            stack[depth] = overallRoot;
+            depth++;
+        }
+        while (depth > 0) {
+            depth--;
+            int current = stack[depth];
+            output.println(GolfBall.getColorName(colors[current]));
+            output.println(years[current]);
+            output.println(description(current));
+            if (right[current] != NONE) {
+                stack[depth] = right[current];
+                depth++;
+            }
+            if (left[current] != NONE) {
+                stack[depth] = left[current];
+                depth++;
+            }
+        }
+    }
+
+    // Behavior:
+    //   - Saves the collection to the given file as a compact binary snapshot
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given path is null
+    //   - Throws an IOException if the file cannot be written
+    // Parameters:
+    //   - Path path - the file the snapshot will be saved to
+    public void saveSnapshot(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        GolfBallSnapshot.write(path, this);
+    }
+
+    // Returns:
+    //   - A String representation of the collection, including the color, year, and
+    //     description of each golf ball in sorted order.
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (GolfBall golfBall : this) {
+            result.append(golfBall.toString()).append('\n');
+        }
+        return result.toString();
+    }
+
+    // Returns:
+    //   - A negative number, zero, or a positive number as the given golf ball comes
+    //     before, is equal to, or comes after the stored golf ball, in the same order
+    //     as GolfBall.compareTo
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to compare
+    //   - int node - the position of the stored golf ball
+    private int compare(GolfBall golfBall, int node) {
+        int colorIndex = golfBall.getColorIndex();
+        if (colorIndex != colors[node]) {
+            return colorIndex - colors[node];
+        }
+        int year = golfBall.getYear();
+        if (year != years[node]) {
+            return year < years[node] ? -1 : 1;
+        }
+        String description = golfBall.getDescription();
+        int id = descriptions[node];
+        int start = descriptionStarts[id];
+        int length = descriptionStarts[id + 1] - start;
+        int shared = Math.min(description.length(), length);
+        for (int i = 0; i < shared; i++) {
+            char c = description.charAt(i);
+            if (c != pool[start + i]) {
+                return c - pool[start + i];
+            }
+        }
+        return description.length() - length;
+    }
+
+    // Returns:
+    //   - A negative number, zero, or a positive number as the first stored golf ball
+    //     comes before, is equal to, or comes after the second, in the same order as
+    //     GolfBall.compareTo
+    // Parameters:
+    //   - int node - the position of the first stored golf ball
+    //   - int other - the position of the second stored golf ball
+    private int compare(int node, int other) {
+        if (colors[node] != colors[other]) {
+            return colors[node] - colors[other];
+        }
+        if (years[node] != years[other]) {
+            return years[node] < years[other] ? -1 : 1;
+        }
+        int id = descriptions[node];
+        int otherId = descriptions[other];
+        if (id == otherId) {
+            return 0;
+        }
+        int start = descriptionStarts[id];
+        int length = descriptionStarts[id + 1] - start;
+        int otherStart = descriptionStarts[otherId];
+        int otherLength = descriptionStarts[otherId + 1] - otherStart;
+        int shared = Math.min(length, otherLength);
+        for (int i = 0; i < shared; i++) {
+            char c = pool[start + i];
+            if (c != pool[otherStart + i]) {
+                return c - pool[otherStart + i];
+            }
+        }
+        return length - otherLength;
+    }
+
+    // Behavior:
+    //   - Stores the given golf ball in the next free position as a leaf
+    // Returns:
+    //   - The position of the stored golf ball
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to store
+    private int newNode(GolfBall golfBall) {
+        ensureCapacity(1);
+        int node = size;
+        colors[node] = (byte) golfBall.getColorIndex();
+        years[node] = golfBall.getYear();
+        descriptions[node] = intern(golfBall.getDescription());
+        left[node] = NONE;
+        right[node] = NONE;
+        heights[node] = 1;
+        size++;
+        return node;
+    }
+
+    // Behavior:
+    //   - Grows the node arrays, if needed, so that the given number of golf balls can
+    //     be added without growing them again
+    // Parameters:
+    //   - int extra - the number of golf balls about to be added
+    private void ensureCapacity(int extra) {
+        int needed = size + extra;
+        if (needed > colors.length) {
+            int capacity = Math.max(needed, colors.length + (colors.length >> 1));
+            colors = Arrays.copyOf(colors, capacity);
+            years = Arrays.copyOf(years, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+        }
+    }
+
+    // Behavior:
+    //   - Finds the given description in the pool, adding it if it is not there yet
+    // Returns:
+    //   - The index of the description in the pool
+    // Parameters:
+    //   - String description - the description to find
+    private int intern(String description) {
+        int hash = description.hashCode();
+        int mask = descriptionTable.length - 1;
+        int slot = mix(hash) & mask;
+        while (descriptionTable[slot] != 0) {
+            int id = descriptionTable[slot] - 1;
+            if (descriptionHashes[id] == hash && matches(description, id)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int id = descriptionCount;
+        if (id + 1 == descriptionStarts.length) {
+            descriptionStarts = Arrays.copyOf(descriptionStarts, 2 * id + 1);
+            descriptionHashes = Arrays.copyOf(descriptionHashes, 2 * id);
+        }
+        if (poolSize + description.length() > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(poolSize + description.length(),
+                                                2 * pool.length));
+        }
+        description.getChars(0, description.length(), pool, poolSize);
+        poolSize += description.length();
+        descriptionStarts[id + 1] = poolSize;
+        descriptionHashes[id] = hash;
+        descriptionTable[slot] = id + 1;
+        descriptionCount++;
+        if (2 * descriptionCount > descriptionTable.length) {
+            rehash(2 * descriptionTable.length);
+        }
+        return id;
+    }
+
+    // Behavior:
+    //   - Replaces the description lookup table with one of the given size and
+    //     re-inserts every description
+    // Parameters:
+    //   - int capacity - the size of the new table, a power of two
+    private void rehash(int capacity) {
+        descriptionTable = new int[capacity];
+        int mask = descriptionTable.length - 1;
+        for (int id = 0; id < descriptionCount; id++) {
+            int slot = mix(descriptionHashes[id]) & mask;
+            while (descriptionTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            descriptionTable[slot] = id + 1;
+        }
+    }
+
+    // Returns:
+    //   - The given hash with its high bits spread into its low bits, so that similar
+    //     descriptions do not crowd into neighboring slots
+    // Parameters:
+    //   - int hash - the hash to spread
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    // Returns:
+    //   - true if the given description is the one stored in the pool under the given id
+    // Parameters:
+    //   - String description - the description to check
+    //   - int id - the index of the stored description
+    private boolean matches(String description, int id) {
+        int start = descriptionStarts[id];
+        if (descriptionStarts[id + 1] - start != description.length()) {
+            return false;
+        }
+        for (int i = 0; i < description.length(); i++) {
+            if (description.charAt(i) != pool[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns:
+    //   - The description of the stored golf ball at the given position
+    // Parameters:
+    //   - int node - the position of the stored golf ball
+    private String description(int node) {
+        int id = descriptions[node];
+        return new String(pool, descriptionStarts[id],
+                          descriptionStarts[id + 1] - descriptionStarts[id]);
+    }
+
+    // Returns:
+    //   - A new GolfBall holding the stored golf ball at the given position
+    // Parameters:
+    //   - int node - the position of the stored golf ball
+    private GolfBall golfBall(int node) {
+        return new GolfBall(colors[node], years[node], description(node));
+    }
+
+    // Behavior:
+    //   - Links the stored golf balls in the given range of positions, which are in
+    //     sorted order, into a perfectly balanced tree
+    // Returns:
+    //   - The position of the root of the tree, or NONE if the range is empty
+    // Parameters:
+    //   - int from - the first position in the range
+    //   - int to - one past the last position in the range
+    private int build(int from, int to) {
+        if (from >= to) {
+            return NONE;
+        }
+        int middle = (from + to) >>> 1;
+        left[middle] = build(from, middle);
+        right[middle] = build(middle + 1, to);
+        updateHeight(middle);
+        return middle;
+    }
+
+    // Behavior:
+    //   - Merges the golf balls stored from the given position onward, which are in
+    //     sorted order and not yet linked into the tree, with the golf balls in the
+    //     tree, dropping any already there. The merged golf balls are moved into
+    //     sorted positions and the tree is rebuilt perfectly balanced.
+    // Parameters:
+    //   - int first - the position of the first golf ball to merge
+    private void merge(int first) {
+        if (overallRoot == NONE) {
+            overallRoot = build(first, size);
+            return;
+        }
+        byte[] mergedColors = new byte[colors.length];
+        int[] mergedYears = new int[years.length];
+        int[] mergedDescriptions = new int[descriptions.length];
+        int[] stack = new int[MAX_HEIGHT];
+        int depth = 0;
+        int current = overallRoot;
+        int next = first;
+        int count = 0;
+        while (current != NONE || depth > 0 || next < size) {
+            while (current != NONE) {
+                stack[depth] = current;
+                depth++;
+                current = left[current];
+            }
+            int comparison = depth == 0 ? 1 : next == size ? -1
+                    : compare(stack[depth - 1], next);
+            int taken;
+            if (comparison <= 0) {
+                depth--;
+                taken = stack[depth];
+                current = right[taken];
+                if (comparison == 0) {
+                    next++;
+                }
+            } else {
+                taken = next;
+                next++;
+            }
+            mergedColors[count] = colors[taken];
+            mergedYears[count] = years[taken];
+            mergedDescriptions[count] = descriptions[taken];
+            count++;
+        }
+        colors = mergedColors;
+        years = mergedYears;
+        descriptions = mergedDescriptions;
+        size = count;
+        overallRoot = build(0, count);
+    }
+
+    // Behavior:
+    //   - Sorts the given golf balls and moves the distinct ones to the front
+    // Returns:
+    //   - The number of distinct golf balls
+    // Parameters:
+    //   - GolfBall[] golfBalls - the golf balls to sort
+    private static int sortDistinct(GolfBall[] golfBalls) {
+        Arrays.sort(golfBalls);
+        int count = 0;
+        for (GolfBall golfBall : golfBalls) {
+            if (count == 0 || golfBalls[count - 1].compareTo(golfBall) != 0) {
+                golfBalls[count] = golfBall;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Returns:
+    //   - The height of the subtree at the given position, where NONE has height 0
+    // Parameters:
+    //   - int node - the position of the root of the subtree
+    private int height(int node) {
+        return node == NONE ? 0 : heights[node];
+    }
+
+    // Behavior:
+    //   - Recomputes the height of the given node from the heights of its children
+    // Parameters:
+    //   - int node - the position of the node
+    private void updateHeight(int node) {
+        heights[node] = (byte) (1 + Math.max(height(left[node]), height(right[node])));
+    }
+
+    // Behavior:
+    //   - Restores the AVL balance of the subtree at the given position, whose children
+    //     are balanced and differ in height by at most two
+    // Returns:
+    //   - The position of the new root of the subtree
+    // Parameters:
+    //   - int node - the position of the root of the subtree
+    private int balance(int node) {
+        int leftHeight = height(left[node]);
+        int rightHeight = height(right[node]);
+        if (leftHeight > rightHeight + 1) {
+            int child = left[node];
+            if (height(left[child]) < height(right[child])) {
+                left[node] = rotateLeft(child);
+            }
+            return rotateRight(node);
+        } else if (rightHeight > leftHeight + 1) {
+            int child = right[node];
+            if (height(right[child]) < height(left[child])) {
+                right[node] = rotateRight(child);
+            }
+            return rotateLeft(node);
+        }
+        updateHeight(node);
+        return node;
+    }
+
+    // Behavior:
+    //   - Rotates the subtree at the given position to the right
+    // Returns:
+    //   - The position of the new root of the subtree
+    // Parameters:
+    //   - int node - the position of the root of the subtree
+    private int rotateRight(int node) {
+        int child = left[node];
+        left[node] = right[child];
+        right[child] = node;
+        updateHeight(node);
+        updateHeight(child);
+        return child;
+    }
+
+    // Behavior:
+    //   - Rotates the subtree at the given position to the left
+    // Returns:
+    //   - The position of the new root of the subtree
+    // Parameters:
+    //   - int node - the position of the root of the subtree
+    private int rotateLeft(int node) {
+        int child = right[node];
+        right[node] = left[child];
+        left[child] = node;
+        updateHeight(node);
+        updateHeight(child);
+        return child;
+    }
+
+    // Iterates over the stored golf balls in sorted order without recursion, keeping
+    // only the positions on the path to the next golf ball on an explicit stack.
+    private class InOrderIterator implements Iterator<GolfBall> {
+        private final int[] stack;
+        private int depth;
+
+        // Behavior:
+        //   - Creates an iterator positioned at the smallest golf ball in the collection
+        public InOrderIterator() {
+            this.stack = new int[MAX_HEIGHT];
+            this.depth = 0;
+            pushLeft(overallRoot);
+        }
+
+        // Returns:
+        //   - true if there are golf balls left to return
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        // Exceptions:
+        //   - Throws a NoSuchElementException if there are no golf balls left
+        // Returns:
+        //   - The next golf ball in sorted order
+        public GolfBall next() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            depth--;
+            int node = stack[depth];
+            pushLeft(right[node]);
+            return golfBall(node);
+        }
+
+        // Behavior:
+        //   - Pushes the given node and every node down its leftmost path onto the stack
+        // Parameters:
+        //   - int node - the position of the first node to push
+        private void pushLeft(int node) {
+            while (node != NONE) {
+                stack[depth] = node;
+                depth++;
+                node = left[node];
+            }
+        }
+    }
+}
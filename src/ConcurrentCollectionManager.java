@@ -0,0 +1,269 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+
+// This class represents a collection of golf balls that can be shared between threads.
+// Readers never take a lock: each read runs against the version of the collection that
+// was current when it started, and that version never changes underneath it. Writers
+// take turns through a single lock, copy the current version in O(1) time, apply their
+// change to the copy (which copies only the changed path of the tree), and then publish
+// the copy as the new current version.
+public class ConcurrentCollectionManager {
+    private final Object writeLock;
+    private volatile CollectionManager current;
+
+    // Behavior:
+    //   - Creates a new empty concurrent collection of golf balls.
+    public ConcurrentCollectionManager() {
+        this.writeLock = new Object();
+        this.current = new CollectionManager();
+    }
+
+    // Behavior:
+    //   - Creates a new concurrent collection of golf balls holding the golf balls in
+    //     the given collection. Later changes to the given collection are not seen by
+    //     this one.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection is null
+    // Parameters:
+    //   - CollectionManager initial - the golf balls to start with
+    public ConcurrentCollectionManager(CollectionManager initial) {
+        if (initial == null) {
+            throw new IllegalArgumentException("Collection cannot be null");
+        }
+        this.writeLock = new Object();
+        this.current = initial.copy();
+    }
+
+    // Behavior:
+    //   - Adds the given golf ball to the collection if it is not already in the
+    //     collection. Readers see either none or all of the change.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to add to the collection
+    public void add(GolfBall golfBall) {
+        if (golfBall == null) {
+            throw new IllegalArgumentException("Golf ball cannot be null.");
+        }
+        synchronized (writeLock) {
+            // Probed with floor rather than contains, so that the check is not counted
+            // as a lookup by the metrics or the Bloom filter
+            if (!golfBall.equals(current.floor(golfBall))) {
+                CollectionManager next = current.copy();
+                next.add(golfBall);
+                current = next;
+                recordShape();
+            }
+        }
+    }
+
+    // Behavior:
+    //   - Adds all of the given golf balls to the collection in a single bulk update,
+    //     skipping any that are already present. Readers see either none or all of the
+    //     golf balls.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given collection or any golf ball
+    //     in it is null
+    // Parameters:
+    //   - Collection<GolfBall> golfBalls - the golf balls to add to the collection
+    public void addAll(Collection<GolfBall> golfBalls) {
+        synchronized (writeLock) {
+            try {
+                CollectionManager next = current.copy();
+                next.addAll(golfBalls);
+                current = next;
+            } finally {
+                recordShape();
+            }
+        }
+    }
+
+    // Behavior:
+    //   - Applies the given change to a copy of the collection and then publishes the
+    //     copy, so that readers see either none or all of a change made of many steps.
+    //     Nothing is published if the change throws an exception.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given change is null
+    // Parameters:
+    //   - Consumer<CollectionManager> change - the change to make, which must not keep
+    //     the collection it is given
+    public void update(Consumer<CollectionManager> change) {
+        if (change == null) {
+            throw new IllegalArgumentException("Change cannot be null");
+        }
+        synchronized (writeLock) {
+            try {
+                CollectionManager next = current.copy();
+                change.accept(next);
+                current = next;
+            } finally {
+                recordShape();
+            }
+        }
+    }
+
+    // Behavior:
+    //   - Determines whether the collection contains the given golf ball, without
+    //     taking a lock
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    // Returns:
+    //   - true if the given golf ball is in the collection
+    //   - false if the given golf ball is not in the collection
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to look for
+    public boolean contains(GolfBall golfBall) {
+        return current.contains(golfBall);
+    }
+
+    // Returns:
+    //   - A list of golf balls in the collection that are of the given color, in sorted
+    //     order, read from a single consistent version without taking a lock
+    // Parameters:
+    //   - String color - the color of golf balls to include in the returned list
+    public List<GolfBall> filter(String color) {
+        return current.filter(color);
+    }
+
+    // Returns:
+    //   - A list of the golf balls in the collection of the given color that were
+    //     obtained between the two given years, inclusive, in sorted order, read from a
+    //     single consistent version without taking a lock
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given color is invalid
+    // Parameters:
+    //   - String color - the color of golf balls to include in the returned list
+    //   - int fromYear - the earliest year to include
+    //   - int toYear - the latest year to include
+    public List<GolfBall> filter(String color, int fromYear, int toYear) {
+        return current.filter(color, fromYear, toYear);
+    }
+
+    // Returns:
+    //   - The golf balls in the collection of the given color that were obtained
+    //     between the two given years, inclusive, in sorted order, read from a single
+    //     consistent version without taking a lock
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given color is invalid
+    // Parameters:
+    //   - String color - the color of golf balls to include
+    //   - int fromYear - the earliest year to include
+    //   - int toYear - the latest year to include
+    public SortedSet<GolfBall> range(String color, int fromYear, int toYear) {
+        return current.range(color, fromYear, toYear);
+    }
+
+    // Returns:
+    //   - A read-only snapshot of the collection as it is now, taken in O(1) time
+    //     without blocking writers. Golf balls added afterward do not appear in it.
+    public CollectionManager snapshot() {
+        return current.snapshot();
+    }
+
+    // Behavior:
+    //   - Saves a snapshot of the collection to the given output destination in a
+    //     pre-order fashion. Writers are not blocked while the save runs, and golf balls
+    //     added during the save are not included.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given output is null
+    // Parameters:
+    //   - PrintStream output - the output destination the collection will be saved to
+    public void save(PrintStream output) {
+        snapshot().save(output);
+    }
+
+    // Behavior:
+    //   - Saves a snapshot of the collection to the given file as a binary snapshot,
+    //     without blocking writers
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given path is null
+    //   - Throws an IOException if the file cannot be written
+    // Parameters:
+    //   - Path path - the file the snapshot will be saved to
+    public void saveSnapshot(Path path) throws IOException {
+        snapshot().saveSnapshot(path);
+    }
+
+    // Behavior:
+    //   - Starts recording metrics for the collection, if it is not already. Every later
+    //     version of the collection records into the same metrics.
+    // Returns:
+    //   - The metrics the collection records into
+    public CollectionMetrics enableMetrics() {
+        synchronized (writeLock) {
+            if (current.getMetrics() == null) {
+                CollectionManager next = current.copy();
+                next.enableMetrics();
+                current = next;
+            }
+            return current.getMetrics();
+        }
+    }
+
+    // Behavior:
+    //   - Puts a Bloom filter with the given false positive rate in front of contains,
+    //     replacing any existing one. Every later version of the collection keeps it up
+    //     to date.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the rate is not strictly between 0 and 1
+    // Returns:
+    //   - The filter
+    // Parameters:
+    //   - double falsePositiveRate - the fraction of lookups for absent golf balls the
+    //     filter may pass on to the tree
+    public GolfBallBloomFilter enableBloomFilter(double falsePositiveRate) {
+        synchronized (writeLock) {
+            CollectionManager next = current.copy();
+            GolfBallBloomFilter filter = next.enableBloomFilter(falsePositiveRate);
+            current = next;
+            return filter;
+        }
+    }
+
+    // Behavior:
+    //   - Caches the results of up to the given number of filter queries, replacing any
+    //     existing cache. Each new version of the collection starts with the previous
+    //     version's results, minus those for the colors a write touched. Readers look
+    //     results up without taking a lock; only storing a result that forces another
+    //     out of a full cache does.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given limit is less than 1
+    // Returns:
+    //   - The cache of the current version, whose counters cover every later version
+    // Parameters:
+    //   - int maxEntries - the most results to cache at once
+    public QueryCache enableQueryCache(int maxEntries) {
+        synchronized (writeLock) {
+            CollectionManager next = current.copy();
+            QueryCache cache = next.enableQueryCache(maxEntries);
+            current = next;
+            return cache;
+        }
+    }
+
+    // Returns:
+    //   - The number of golf balls in the collection
+    public int size() {
+        return current.size();
+    }
+
+    // Returns:
+    //   - A String representation of the collection, including the color, year, and
+    //     description of each golf ball in sorted order.
+    public String toString() {
+        return current.toString();
+    }
+
+    // Behavior:
+    //   - Records the shape of the published version in the metrics, if they are
+    //     enabled. A write's copy records its own shape as it changes, so this keeps
+    //     the shape of a copy that failed and was discarded from being reported.
+    private void recordShape() {
+        CollectionMetrics metrics = current.getMetrics();
+        if (metrics != null) {
+            metrics.recordShape(current.size(), current.height());
+        }
+    }
+}
@@ -0,0 +1,758 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+// This class represents a collection of golf balls kept in a file instead of on the
+// heap, so a collection can be far larger than memory. The golf balls are stored in a
+// B+tree of fixed-size pages ordered the same way as GolfBall.compareTo. Leaf pages
+// hold the golf balls themselves and are chained left to right; internal pages hold
+// separator keys and the page numbers of their children. The file is memory-mapped in
+// large regions that are mapped on first use, so opening a collection only reads its
+// header, and each query touches just the pages on its path from the root. A region is
+// mapped only as far as the file reaches, and the file grows, doubling the mapping of
+// its last region, only as new pages are allocated. The operating system's page cache
+// decides which pages stay in memory, so only the pages in use take up memory, and
+// none of them take up heap.
+//
+// Every page starts with its type, the number of entries, and a link (the next leaf for
+// a leaf page, or the leftmost child for an internal page), followed by the offset of
+// each entry and then the entries. An entry is the color's index as one byte, the year,
+// the length of the description, and the description's characters, followed by the
+// page number of a child in an internal page. Page 0 holds the header of the file.
+//
+// Changes are written straight into the mapped file. They are guaranteed to be on disk
+// only after sync or close. A collection opened with openReadOnly maps the file
+// read-only, so files without write permission can still be queried.
+public class DiskCollectionManager implements Iterable<GolfBall>, Closeable {
+    public static final int MAX_DESCRIPTION_LENGTH = 500;
+
+    private static final int MAGIC = 0x47424254;
+    private static final int VERSION = 1;
+    private static final int PAGE_SIZE = 4096;
+    private static final int PAGES_PER_REGION = 4096;
+    private static final long REGION_SIZE = (long) PAGES_PER_REGION * PAGE_SIZE;
+    private static final int MAX_HEIGHT = 32;
+
+    private static final byte LEAF = 0;
+    private static final byte INTERNAL = 1;
+    private static final int PAGE_HEADER_SIZE = 7;
+    private static final int KEY_HEADER_SIZE = 7;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int PAGE_SIZE_OFFSET = 8;
+    private static final int ROOT_OFFSET = 12;
+    private static final int PAGE_COUNT_OFFSET = 16;
+    private static final int SIZE_OFFSET = 20;
+    private static final int HEIGHT_OFFSET = 24;
+
+    private final FileChannel channel;
+    private final boolean readOnly;
+    private final List<MappedByteBuffer> regions;
+    private final int[] path;
+    private final int[] slots;
+    private int root;
+    private int pageCount;
+    private int size;
+    private int height;
+
+    // Behavior:
+    //   - Opens the collection in the given channel, reading only its header
+    // Exceptions:
+    //   - Throws an IOException if the file is not a valid collection or cannot be read
+    // Parameters:
+    //   - FileChannel channel - the channel to the collection's file, open for reading,
+    //     and for writing unless the collection is read-only
+    //   - boolean readOnly - true if the collection cannot be changed
+    private DiskCollectionManager(FileChannel channel, boolean readOnly) throws IOException {
+        this.channel = channel;
+        this.readOnly = readOnly;
+        this.regions = new ArrayList<>();
+        this.path = new int[MAX_HEIGHT];
+        this.slots = new int[MAX_HEIGHT];
+        if (channel.size() == 0) {
+            if (readOnly) {
+                throw new IOException("Collection file is empty");
+            }
+            this.root = 1;
+            this.pageCount = 2;
+            this.size = 0;
+            this.height = 1;
+            writePage(root, LEAF, 0, List.of());
+            writeHeader();
+        } else {
+            if (channel.size() < PAGE_SIZE) {
+                throw new IOException("Collection file header is truncated");
+            }
+            MappedByteBuffer header = region(0);
+            if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException("Not a disk collection file");
+            }
+            int version = header.getInt(VERSION_OFFSET);
+            if (version != VERSION || header.getInt(PAGE_SIZE_OFFSET) != PAGE_SIZE) {
+                throw new IOException("Unsupported collection file version " + version);
+            }
+            this.root = header.getInt(ROOT_OFFSET);
+            this.pageCount = header.getInt(PAGE_COUNT_OFFSET);
+            this.size = header.getInt(SIZE_OFFSET);
+            this.height = header.getInt(HEIGHT_OFFSET);
+            if (root < 1 || root >= pageCount || size < 0 || height < 1
+                    || height > MAX_HEIGHT || (long) pageCount * PAGE_SIZE > channel.size()) {
+                throw new IOException("Collection file header is corrupt");
+            }
+        }
+    }
+
+    // Behavior:
+    //   - Opens the collection stored in the given file, creating an empty one if the
+    //     file does not exist. Only the header is read, so opening takes the same time
+    //     no matter how large the collection is.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given path is null
+    //   - Throws an IOException if the file is not a valid collection or cannot be opened
+    // Returns:
+    //   - The collection stored in the file
+    // Parameters:
+    //   - Path path - the file holding the collection
+    public static DiskCollectionManager open(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new DiskCollectionManager(channel, false);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Behavior:
+    //   - Opens the collection stored in the given file for lookups only. The file is
+    //     opened and mapped read-only, so it is never changed and does not need write
+    //     permission.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given path is null
+    //   - Throws an IOException if the file does not exist, is not a valid collection,
+    //     or cannot be opened
+    // Returns:
+    //   - The collection stored in the file, which cannot be changed
+    // Parameters:
+    //   - Path path - the file holding the collection
+    public static DiskCollectionManager openReadOnly(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new DiskCollectionManager(channel, true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Behavior:
+    //   - Adds the given golf ball to the collection if it is not already in the
+    //     collection. A page that overflows is split in two, and the split moves up the
+    //     tree as far as needed.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null or its
+    //     description is longer than MAX_DESCRIPTION_LENGTH
+    //   - Throws an UnsupportedOperationException if the collection was opened
+    //     read-only
+    //   - Throws an IOException if the file cannot be written
+    // Returns:
+    //   - true if the golf ball was added
+    //   - false if it was already in the collection
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to add to the collection
+    public boolean add(GolfBall golfBall) throws IOException {
+        if (golfBall == null) {
+            throw new IllegalArgumentException("Golf ball cannot be null.");
+        }
+        if (golfBall.getDescription().length() > MAX_DESCRIPTION_LENGTH) {
+            throw new IllegalArgumentException("Description cannot be longer than "
+                                               + MAX_DESCRIPTION_LENGTH + " characters");
+        }
+        if (readOnly) {
+            throw new UnsupportedOperationException("Collection was opened read-only");
+        }
+        int page = findLeaf(golfBall, true);
+        MappedByteBuffer buffer = region(page);
+        int base = base(page);
+        int slot = lowerBound(golfBall, buffer, base);
+        if (slot < count(buffer, base)
+                && compare(golfBall, buffer, entry(buffer, base, slot)) == 0) {
+            return false;
+        }
+        List<byte[]> entries = readEntries(buffer, base);
+        entries.add(slot, encodeKey(golfBall));
+        int link = buffer.getInt(base + 3);
+        byte type = LEAF;
+        int depth = height - 1;
+        while (true) {
+            if (fits(entries)) {
+                writePage(page, type, link, entries);
+                break;
+            }
+            int middle = splitPoint(entries);
+            int sibling = allocatePage();
+            byte[] separator;
+            if (type == LEAF) {
+                writePage(sibling, LEAF, link, entries.subList(middle, entries.size()));
+                writePage(page, LEAF, sibling, entries.subList(0, middle));
+                separator = withChild(entries.get(middle), sibling);
+            } else {
+                byte[] pushed = entries.get(middle);
+                writePage(sibling, INTERNAL, childOf(pushed),
+                          entries.subList(middle + 1, entries.size()));
+                writePage(page, INTERNAL, link, entries.subList(0, middle));
+                separator = withChild(pushed, sibling);
+            }
+            if (depth == 0) {
+                int newRoot = allocatePage();
+                writePage(newRoot, INTERNAL, page, List.of(separator));
+                root = newRoot;
+                height++;
+                break;
+            }
+            depth--;
+            page = path[depth];
+            buffer = region(page);
+            base = base(page);
+            entries = readEntries(buffer, base);
+            entries.add(slots[depth], separator);
+            link = buffer.getInt(base + 3);
+            type = INTERNAL;
+        }
+        size++;
+        writeHeader();
+        return true;
+    }
+
+    // Behavior:
+    //   - Determines whether the collection contains the given golf ball, reading one
+    //     page per level of the tree
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given golf ball is null
+    //   - Throws an IOException if the file cannot be read
+    // Returns:
+    //   - true if the given golf ball is in the collection
+    //   - false if the given golf ball is not in the collection
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to look for
+    public boolean contains(GolfBall golfBall) throws IOException {
+        if (golfBall == null) {
+            throw new IllegalArgumentException("Golf ball cannot be null");
+        }
+        int page = findLeaf(golfBall, false);
+        MappedByteBuffer buffer = region(page);
+        int base = base(page);
+        int slot = lowerBound(golfBall, buffer, base);
+        return slot < count(buffer, base)
+                && compare(golfBall, buffer, entry(buffer, base, slot)) == 0;
+    }
+
+    // Returns:
+    //   - A list of golf balls in the collection that are of the given color, in sorted
+    //     order. Only the leaf pages holding that color are read.
+    // Exceptions:
+    //   - Throws an IOException if the file cannot be read
+    // Parameters:
+    //   - String color - the color of golf balls to include in the returned list
+    public List<GolfBall> filter(String color) throws IOException {
+        List<GolfBall> golfBalls = new ArrayList<>();
+        if (GolfBall.getColorIndex(color) < 0) {
+            return golfBalls;
+        }
+        Iterator<GolfBall> iterator = iterator(new GolfBall(color, Integer.MIN_VALUE, ""));
+        while (iterator.hasNext()) {
+            GolfBall next = iterator.next();
+            if (!next.getColor().equalsIgnoreCase(color)) {
+                break;
+            }
+            golfBalls.add(next);
+        }
+        return golfBalls;
+    }
+
+    // Returns:
+    //   - The number of golf balls in the collection
+    public int size() {
+        return size;
+    }
+
+    // Returns:
+    //   - true if the collection was opened read-only and cannot be changed
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // Returns:
+    //   - The number of levels of pages in the tree, where a tree with only a root leaf
+    //     has height 1
+    public int height() {
+        return height;
+    }
+
+    // Returns:
+    //   - An iterator over the golf balls in the collection in sorted order, which walks
+    //     the chain of leaf pages. The collection must not be changed while the iterator
+    //     is in use.
+    public Iterator<GolfBall> iterator() {
+        try {
+            return iterator(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Returns:
+    //   - A String representation of the collection, including the color, year, and
+    //     description of each golf ball in sorted order.
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (GolfBall golfBall : this) {
+            result.append(golfBall.toString()).append('\n');
+        }
+        return result.toString();
+    }
+
+    // Behavior:
+    //   - Forces every change made so far onto the storage device. Does nothing if the
+    //     collection was opened read-only.
+    // Exceptions:
+    //   - Throws an IOException if the file cannot be synced
+    public void sync() throws IOException {
+        if (readOnly) {
+            return;
+        }
+        for (MappedByteBuffer region : regions) {
+            if (region != null) {
+                region.force();
+            }
+        }
+        channel.force(true);
+    }
+
+    // Behavior:
+    //   - Syncs and closes the collection's file
+    // Exceptions:
+    //   - Throws an IOException if the file cannot be synced or closed
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            regions.clear();
+            channel.close();
+        }
+    }
+
+    // Returns:
+    //   - An iterator over the golf balls in the collection in sorted order, starting at
+    //     the first golf ball that is not less than the given one
+    // Exceptions:
+    //   - Throws an IOException if the file cannot be read
+    // Parameters:
+    //   - GolfBall from - the smallest golf ball to return, or null to start at the
+    //     beginning
+    private Iterator<GolfBall> iterator(GolfBall from) throws IOException {
+        int page = root;
+        for (int level = 1; level < height; level++) {
+            MappedByteBuffer buffer = region(page);
+            int base = base(page);
+            page = from == null ? buffer.getInt(base + 3) : child(from, buffer, base);
+        }
+        int slot = from == null ? 0 : lowerBound(from, region(page), base(page));
+        return new LeafIterator(page, slot);
+    }
+
+    // Behavior:
+    //   - Walks from the root to the leaf page that would hold the given golf ball,
+    //     remembering the path if asked to
+    // Returns:
+    //   - The page number of the leaf
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to find the leaf for
+    //   - boolean remember - true to record each page and child slot along the way in
+    //     path and slots
+    private int findLeaf(GolfBall golfBall, boolean remember) throws IOException {
+        int page = root;
+        for (int level = 0; level < height - 1; level++) {
+            MappedByteBuffer buffer = region(page);
+            int base = base(page);
+            int slot = upperBound(golfBall, buffer, base);
+            if (remember) {
+                path[level] = page;
+                slots[level] = slot;
+            }
+            page = slot == 0 ? buffer.getInt(base + 3)
+                             : childOf(buffer, entry(buffer, base, slot - 1));
+        }
+        return page;
+    }
+
+    // Returns:
+    //   - The page number of the child of the given internal page that would hold the
+    //     given golf ball
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to find the child for
+    //   - MappedByteBuffer buffer - the region holding the page
+    //   - int base - the offset of the page in the region
+    private int child(GolfBall golfBall, MappedByteBuffer buffer, int base) {
+        int slot = upperBound(golfBall, buffer, base);
+        return slot == 0 ? buffer.getInt(base + 3)
+                         : childOf(buffer, entry(buffer, base, slot - 1));
+    }
+
+    // Returns:
+    //   - The number of keys in the given page that are less than the given golf ball
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to search for
+    //   - MappedByteBuffer buffer - the region holding the page
+    //   - int base - the offset of the page in the region
+    private int lowerBound(GolfBall golfBall, MappedByteBuffer buffer, int base) {
+        int low = 0;
+        int high = count(buffer, base);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(golfBall, buffer, entry(buffer, base, middle)) > 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Returns:
+    //   - The number of keys in the given page that are less than or equal to the
+    //     given golf ball
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to search for
+    //   - MappedByteBuffer buffer - the region holding the page
+    //   - int base - the offset of the page in the region
+    private int upperBound(GolfBall golfBall, MappedByteBuffer buffer, int base) {
+        int low = 0;
+        int high = count(buffer, base);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(golfBall, buffer, entry(buffer, base, middle)) >= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Returns:
+    //   - A negative number, zero, or a positive number as the given golf ball comes
+    //     before, is equal to, or comes after the key stored at the given offset, in the
+    //     same order as GolfBall.compareTo
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to compare
+    //   - MappedByteBuffer buffer - the region holding the key
+    //   - int offset - the offset of the key in the region
+    private static int compare(GolfBall golfBall, MappedByteBuffer buffer, int offset) {
+        int colorIndex = buffer.get(offset);
+        if (golfBall.getColorIndex() != colorIndex) {
+            return golfBall.getColorIndex() - colorIndex;
+        }
+        int year = buffer.getInt(offset + 1);
+        if (golfBall.getYear() != year) {
+            return golfBall.getYear() < year ? -1 : 1;
+        }
+        String description = golfBall.getDescription();
+        int length = buffer.getShort(offset + 5);
+        int shared = Math.min(description.length(), length);
+        for (int i = 0; i < shared; i++) {
+            char c = buffer.getChar(offset + KEY_HEADER_SIZE + 2 * i);
+            if (description.charAt(i) != c) {
+                return description.charAt(i) - c;
+            }
+        }
+        return description.length() - length;
+    }
+
+    // Returns:
+    //   - The number of entries in the given page
+    // Parameters:
+    //   - MappedByteBuffer buffer - the region holding the page
+    //   - int base - the offset of the page in the region
+    private static int count(MappedByteBuffer buffer, int base) {
+        return buffer.getShort(base + 1);
+    }
+
+    // Returns:
+    //   - The offset in the region of the entry with the given index in the given page
+    // Parameters:
+    //   - MappedByteBuffer buffer - the region holding the page
+    //   - int base - the offset of the page in the region
+    //   - int index - the index of the entry
+    private static int entry(MappedByteBuffer buffer, int base, int index) {
+        return base + buffer.getShort(base + PAGE_HEADER_SIZE + 2 * index);
+    }
+
+    // Returns:
+    //   - The length in bytes of the key stored at the given offset
+    // Parameters:
+    //   - MappedByteBuffer buffer - the region holding the key
+    //   - int offset - the offset of the key in the region
+    private static int keySize(MappedByteBuffer buffer, int offset) {
+        return KEY_HEADER_SIZE + 2 * buffer.getShort(offset + 5);
+    }
+
+    // Returns:
+    //   - The child page number stored after the key at the given offset in an
+    //     internal page
+    // Parameters:
+    //   - MappedByteBuffer buffer - the region holding the entry
+    //   - int offset - the offset of the entry in the region
+    private static int childOf(MappedByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + keySize(buffer, offset));
+    }
+
+    // Returns:
+    //   - The child page number stored at the end of the given encoded internal entry
+    // Parameters:
+    //   - byte[] entry - the encoded entry
+    private static int childOf(byte[] entry) {
+        return ByteBuffer.wrap(entry).getInt(entry.length - 4);
+    }
+
+    // Returns:
+    //   - The given encoded entry's key followed by the given child page number
+    // Parameters:
+    //   - byte[] entry - an encoded leaf or internal entry
+    //   - int child - the child page number to attach
+    private static byte[] withChild(byte[] entry, int child) {
+        int keySize = KEY_HEADER_SIZE + 2 * ByteBuffer.wrap(entry).getShort(5);
+        return ByteBuffer.allocate(keySize + 4).put(entry, 0, keySize).putInt(child).array();
+    }
+
+    // Returns:
+    //   - The given golf ball encoded as a key
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to encode
+    private static byte[] encodeKey(GolfBall golfBall) {
+        String description = golfBall.getDescription();
+        ByteBuffer key = ByteBuffer.allocate(KEY_HEADER_SIZE + 2 * description.length());
+        key.put((byte) golfBall.getColorIndex()).putInt(golfBall.getYear())
+           .putShort((short) description.length());
+        for (int i = 0; i < description.length(); i++) {
+            key.putChar(description.charAt(i));
+        }
+        return key.array();
+    }
+
+    // Returns:
+    //   - A copy of every entry in the given page, in order
+    // Parameters:
+    //   - MappedByteBuffer buffer - the region holding the page
+    //   - int base - the offset of the page in the region
+    private static List<byte[]> readEntries(MappedByteBuffer buffer, int base) {
+        int count = count(buffer, base);
+        int childSize = buffer.get(base) == INTERNAL ? 4 : 0;
+        List<byte[]> entries = new ArrayList<>(count + 1);
+        for (int i = 0; i < count; i++) {
+            int offset = entry(buffer, base, i);
+            byte[] bytes = new byte[keySize(buffer, offset) + childSize];
+            buffer.get(offset, bytes);
+            entries.add(bytes);
+        }
+        return entries;
+    }
+
+    // Returns:
+    //   - true if the given entries fit in a single page
+    // Parameters:
+    //   - List<byte[]> entries - the entries of the page
+    private static boolean fits(List<byte[]> entries) {
+        int bytes = PAGE_HEADER_SIZE;
+        for (byte[] entry : entries) {
+            bytes += 2 + entry.length;
+        }
+        return bytes <= PAGE_SIZE;
+    }
+
+    // Returns:
+    //   - The index of the entry that splits the given entries into two halves of
+    //     about the same number of bytes
+    // Parameters:
+    //   - List<byte[]> entries - the entries of an overflowing page
+    private static int splitPoint(List<byte[]> entries) {
+        int total = 0;
+        for (byte[] entry : entries) {
+            total += 2 + entry.length;
+        }
+        int seen = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            seen += 2 + entries.get(i).length;
+            if (2 * seen >= total) {
+                return Math.max(1, Math.min(i, entries.size() - 2));
+            }
+        }
+        return entries.size() / 2;
+    }
+
+    // Behavior:
+    //   - Replaces the contents of the given page
+    // Exceptions:
+    //   - Throws an IOException if the page cannot be mapped
+    // Parameters:
+    //   - int page - the page number
+    //   - byte type - LEAF or INTERNAL
+    //   - int link - the next leaf page for a leaf, or the leftmost child for an
+    //     internal page
+    //   - List<byte[]> entries - the encoded entries, in order
+    private void writePage(int page, byte type, int link, List<byte[]> entries)
+            throws IOException {
+        MappedByteBuffer buffer = region(page);
+        int base = base(page);
+        buffer.put(base, type);
+        buffer.putShort(base + 1, (short) entries.size());
+        buffer.putInt(base + 3, link);
+        int offset = PAGE_HEADER_SIZE + 2 * entries.size();
+        for (int i = 0; i < entries.size(); i++) {
+            byte[] entry = entries.get(i);
+            buffer.putShort(base + PAGE_HEADER_SIZE + 2 * i, (short) offset);
+            buffer.put(base + offset, entry);
+            offset += entry.length;
+        }
+    }
+
+    // Returns:
+    //   - The page number of a new, empty page at the end of the file
+    private int allocatePage() {
+        int page = pageCount;
+        pageCount++;
+        return page;
+    }
+
+    // Behavior:
+    //   - Writes the current root, page count, size, and height to the file's header
+    // Exceptions:
+    //   - Throws an IOException if the header cannot be mapped
+    private void writeHeader() throws IOException {
+        MappedByteBuffer header = region(0);
+        header.putInt(MAGIC_OFFSET, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(PAGE_SIZE_OFFSET, PAGE_SIZE);
+        header.putInt(ROOT_OFFSET, root);
+        header.putInt(PAGE_COUNT_OFFSET, pageCount);
+        header.putInt(SIZE_OFFSET, size);
+        header.putInt(HEIGHT_OFFSET, height);
+    }
+
+    // Returns:
+    //   - The mapped region of the file holding the given page, mapping it if it has not
+    //     been mapped yet or does not reach the page. A region is mapped only as far as
+    //     the file reaches. When a page past the end of the file is needed, the file is
+    //     grown by mapping the region at least twice as far as before, so a region is
+    //     remapped only a few times as it fills. Regions stay mapped until the
+    //     collection is closed, because Java only unmaps a region once it is garbage
+    //     collected, and mapping regions over and over would run out of mappings long
+    //     before the garbage collector caught up.
+    // Exceptions:
+    //   - Throws an IOException if the region cannot be mapped, or if the page is past
+    //     the end of a read-only collection's file
+    // Parameters:
+    //   - int page - the page number
+    private MappedByteBuffer region(int page) throws IOException {
+        int index = page / PAGES_PER_REGION;
+        while (regions.size() <= index) {
+            regions.add(null);
+        }
+        MappedByteBuffer region = regions.get(index);
+        int needed = base(page) + PAGE_SIZE;
+        if (region == null || region.capacity() < needed) {
+            long start = (long) index * REGION_SIZE;
+            long length = Math.min(REGION_SIZE, Math.max(0, channel.size() - start));
+            if (length < needed) {
+                if (readOnly) {
+                    throw new IOException("Page " + page + " is past the end of the file");
+                }
+                int mapped = region == null ? 0 : region.capacity();
+                length = Math.min(REGION_SIZE, Math.max(needed, 2L * mapped));
+            }
+            region = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY
+                                          : FileChannel.MapMode.READ_WRITE, start, length);
+            regions.set(index, region);
+        }
+        return region;
+    }
+
+    // Returns:
+    //   - The offset of the given page within its mapped region
+    // Parameters:
+    //   - int page - the page number
+    private static int base(int page) {
+        return (page % PAGES_PER_REGION) * PAGE_SIZE;
+    }
+
+    // Iterates over the golf balls in the collection in sorted order by walking the
+    // chain of leaf pages, reading one page at a time.
+    private class LeafIterator implements Iterator<GolfBall> {
+        private int page;
+        private int slot;
+
+        // Behavior:
+        //   - Creates an iterator positioned at the given entry of the given leaf page
+        // Parameters:
+        //   - int page - the page number of the leaf
+        //   - int slot - the index of the first entry to return
+        public LeafIterator(int page, int slot) throws IOException {
+            this.page = page;
+            this.slot = slot;
+            skipFinishedPages();
+        }
+
+        // Returns:
+        //   - true if there are golf balls left to return
+        public boolean hasNext() {
+            return page != 0;
+        }
+
+        // Exceptions:
+        //   - Throws a NoSuchElementException if there are no golf balls left
+        //   - Throws an UncheckedIOException if the file cannot be read
+        // Returns:
+        //   - The next golf ball in sorted order
+        public GolfBall next() {
+            if (page == 0) {
+                throw new NoSuchElementException();
+            }
+            try {
+                MappedByteBuffer buffer = region(page);
+                int offset = entry(buffer, base(page), slot);
+                char[] description = new char[buffer.getShort(offset + 5)];
+                for (int i = 0; i < description.length; i++) {
+                    description[i] = buffer.getChar(offset + KEY_HEADER_SIZE + 2 * i);
+                }
+                GolfBall golfBall = new GolfBall(buffer.get(offset),
+                                                 buffer.getInt(offset + 1),
+                                                 new String(description));
+                slot++;
+                skipFinishedPages();
+                return golfBall;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Behavior:
+        //   - Moves along the chain of leaves until the current slot holds an entry, or
+        //     to page 0 if there are none left
+        private void skipFinishedPages() throws IOException {
+            while (page != 0 && slot >= count(region(page), base(page))) {
+                page = region(page).getInt(base(page) + 3);
+                slot = 0;
+            }
+        }
+    }
+}
@@ -6,41 +6,64 @@ public class GolfBall implements Comparable<GolfBall> {
     private static final String[] COLORS = {"white", "red", "pink", "orange", "yellow",
         "green", "blue", "purple", "brown", "black"};
     private final String color;
+    private final byte colorIndex;
     private final int year;
     private final String description;
+    private final int hash;
 
     // Behavior:
-    //   - Creates a GolfBall object with the given color, year, and description
+    //   - Creates a GolfBall object with the given color, year, and description. The
+    //     color is resolved to its index in the rainbow once here, so comparisons never
+    //     need to look it up again.
     // Exceptions:
-    //   - Throws an IllegalArgumentException if the given color is invalid
+    //   - Throws an IllegalArgumentException if the given color is invalid or the
+    //     given description is null
     // Parameters:
     //   - String color - the color of the golf ball
     //   - int year - the year the golf ball was collected
     //   - String description - a description of the golf ball
     public GolfBall(String color, int year, String description) {
-        if (!GolfBall.checkColor(color.toLowerCase())) {
-            throw new IllegalArgumentException("Invalid color: " + color
-                                                + " is not present in COLORS");
+        this(checkColor(color), year, description);
+    }
+
+    // Behavior:
+    //   - Creates a GolfBall object with the color at the given index in the rainbow and
+    //     the given year and description, for callers that have already resolved the
+    //     color
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given color index is out of range or
+    //     the given description is null
+    // Parameters:
+    //   - int colorIndex - the index of the golf ball's color
+    //   - int year - the year the golf ball was collected
+    //   - String description - a description of the golf ball
+    public GolfBall(int colorIndex, int year, String description) {
+        if (colorIndex < 0 || colorIndex >= COLORS.length) {
+            throw new IllegalArgumentException("Invalid color index: " + colorIndex);
+        }
+        if (description == null) {
+            throw new IllegalArgumentException("Description cannot be null");
         }
-        this.color = color.toLowerCase();
+        this.color = COLORS[colorIndex];
+        this.colorIndex = (byte) colorIndex;
         this.year = year;
         this.description = description;
+        this.hash = hashOf(colorIndex, year, description);
     }
 
-    // Behavior: 
-    //   - Checks if the given color is valid for a GolfBall
-    // Returns: 
-    //   - true if the color is valid
-    //   - false if the color is invalid
+    // Returns:
+    //   - The index of the given color in the array of valid colors
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given color is invalid
     // Parameters:
-    //   - String color - the color to check for validity
-    private static boolean checkColor(String color) {
-        for (String currColor : COLORS) {
-            if (currColor.equals(color)) {
-                return true;
-            }
+    //   - String color - the color to find the index of
+    private static int checkColor(String color) {
+        int index = getColorIndex(color);
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid color: " + color
+                                                + " is not present in COLORS");
         }
-        return false;
+        return index;
     }
 
     // Behavior:
@@ -67,6 +90,70 @@ public class GolfBall implements Comparable<GolfBall> {
         return new GolfBall(color, year, description);
     }
 
+    // Behavior:
+    //   - Creates a GolfBall from a single line of text holding its color, year, and
+    //     description separated by whitespace, as used by scripted and network commands
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given text is null or malformed, or
+    //     the color is invalid
+    // Returns:
+    //   - A new GolfBall with the characteristics in the text
+    // Parameters:
+    //   - String text - the color, year, and description, in that order; the
+    //     description is the rest of the line and may contain spaces
+    public static GolfBall parse(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text cannot be null.");
+        }
+        String[] fields = text.strip().split("\\s+", 3);
+        if (fields.length < 3) {
+            throw new IllegalArgumentException("expected <color> <year> <description>");
+        }
+        return new GolfBall(fields[0], parseYear(fields[1]), fields[2]);
+    }
+
+    // Behavior:
+    //   - Parses the given characters as a base 10 year without allocating, so that
+    //     loaders can parse slices of their buffers directly
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given text is null or is not a valid
+    //     int
+    // Returns:
+    //   - The parsed year
+    // Parameters:
+    //   - CharSequence text - the characters to parse, such as a String or CharBuffer
+    public static int parseYear(CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Year cannot be null");
+        }
+        int length = text.length();
+        int index = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            index++;
+        }
+        if (index == length) {
+            throw new IllegalArgumentException("invalid year \"" + text + "\"");
+        }
+        long value = 0;
+        for (; index < length; index++) {
+            char digit = text.charAt(index);
+            if (digit < '0' || digit > '9') {
+                throw new IllegalArgumentException("invalid year \"" + text + "\"");
+            }
+            value = value * 10 + (digit - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new IllegalArgumentException("year out of range \"" + text + "\"");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("year out of range \"" + text + "\"");
+        }
+        return (int) value;
+    }
+
     // Returns:
     //   - A String representation of this GolfBall, including its description, color,
     //     and year obtained
@@ -86,30 +173,149 @@ public class GolfBall implements Comparable<GolfBall> {
     // Parameters:
     //   - GolfBall other - the other GolfBall that this GolfBall is being compared to
     public int compareTo(GolfBall other) {
-        if (!this.color.equals(other.color)) {
-            return GolfBall.getColorIndex(this.color) - GolfBall.getColorIndex(other.color);
+        if (this.colorIndex != other.colorIndex) {
+            return this.colorIndex - other.colorIndex;
         } else if (this.year != other.year) {
-            return this.year - other.year;
+            return this.year < other.year ? -1 : 1;
         } else {
             return this.description.compareTo(other.description);
         }
     }
 
+    // Behavior:
+    //   - Compares this GolfBall to a golf ball with the given color, year, and
+    //     description in the same order as compareTo, without creating that golf ball
     // Returns:
-    //   - The index of the given color in the array of valid colors or -1 if the color
-    //     is invalid
+    //   - A negative integer, zero, or a positive integer as this GolfBall is less than,
+    //     equal to, or greater than the described golf ball
     // Parameters:
-    //   - String color - the color to find the index of
-    public static int getColorIndex(String color) {
-        color = color.toLowerCase();
+    //   - int colorIndex - the index of the other golf ball's color
+    //   - int year - the year the other golf ball was obtained
+    //   - CharSequence description - the other golf ball's description, which is not null
+    public int compareTo(int colorIndex, int year, CharSequence description) {
+        if (this.colorIndex != colorIndex) {
+            return this.colorIndex - colorIndex;
+        } else if (this.year != year) {
+            return this.year < year ? -1 : 1;
+        } else if (description instanceof String) {
+            return this.description.compareTo((String) description);
+        } else {
+            return compareDescription(description);
+        }
+    }
+
+    // Returns:
+    //   - A negative integer, zero, or a positive integer as this GolfBall's description
+    //     comes before, is equal to, or comes after the given characters, compared the
+    //     same way String.compareTo compares
+    // Parameters:
+    //   - CharSequence other - the characters to compare the description to
+    private int compareDescription(CharSequence other) {
+        int length = Math.min(description.length(), other.length());
+        for (int i = 0; i < length; i++) {
+            char first = description.charAt(i);
+            char second = other.charAt(i);
+            if (first != second) {
+                return first - second;
+            }
+        }
+        return description.length() - other.length();
+    }
+
+    // Returns:
+    //   - The index of the given color in the array of valid colors, ignoring case, or
+    //     -1 if the color is invalid. Nothing is allocated, so the color can be a slice
+    //     of a loader's buffer.
+    // Parameters:
+    //   - CharSequence color - the color to find the index of
+    public static int getColorIndex(CharSequence color) {
+        if (color == null) {
+            return -1;
+        }
         for (int i = 0; i < COLORS.length; i++) {
-            if (COLORS[i].equals(color)) {
+            if (equalsIgnoreCase(COLORS[i], color)) {
                 return i;
             }
         }
         return -1;
     }
 
+    // Returns:
+    //   - true if the given color name and characters are equal, ignoring case
+    // Parameters:
+    //   - String name - one of the valid colors
+    //   - CharSequence color - the characters to compare it to
+    private static boolean equalsIgnoreCase(String name, CharSequence color) {
+        if (color instanceof String) {
+            return name.equalsIgnoreCase((String) color);
+        }
+        if (name.length() != color.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char first = name.charAt(i);
+            char second = color.charAt(i);
+            if (first != second && Character.toLowerCase(first) != Character.toLowerCase(second)
+                    && Character.toUpperCase(first) != Character.toUpperCase(second)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns:
+    //   - The hash code a GolfBall with the given color, year, and description has,
+    //     computed without creating one
+    // Parameters:
+    //   - int colorIndex - the index of the golf ball's color, which is valid
+    //   - int year - the year the golf ball was obtained
+    //   - CharSequence description - the golf ball's description, which is not null
+    public static int hashOf(int colorIndex, int year, CharSequence description) {
+        return 31 * descriptionHashOf(description)
+                + 31 * (year + 31 * COLORS[colorIndex].hashCode());
+    }
+
+    // Returns:
+    //   - The hash code of the given description, the same as String.hashCode gives for
+    //     the same characters, computed without creating a String
+    // Parameters:
+    //   - CharSequence description - the description to hash, which is not null
+    public static int descriptionHashOf(CharSequence description) {
+        if (description instanceof String) {
+            return description.hashCode();
+        }
+        int descriptionHash = 0;
+        for (int i = 0; i < description.length(); i++) {
+            descriptionHash = 31 * descriptionHash + description.charAt(i);
+        }
+        return descriptionHash;
+    }
+
+    // Returns:
+    //   - The index of this GolfBall's color in the array of valid colors
+    public int getColorIndex() {
+        return this.colorIndex;
+    }
+
+    // Returns:
+    //   - The number of valid colors
+    public static int getColorCount() {
+        return COLORS.length;
+    }
+
+    // Returns:
+    //   - The color at the given index in the array of valid colors
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given index is out of range
+    // Parameters:
+    //   - int colorIndex - the index of the color to return
+    public static String getColorName(int colorIndex) {
+        if (colorIndex < 0 || colorIndex >= COLORS.length) {
+            throw new IllegalArgumentException("Invalid color index: " + colorIndex);
+        }
+        return COLORS[colorIndex];
+    }
+
     // Returns:
     //   - The color of this GolfBall
     public String getColor() {
@@ -141,8 +347,9 @@ public class GolfBall implements Comparable<GolfBall> {
             return true;
         } else if (o instanceof GolfBall) {
             GolfBall other = (GolfBall) o;
-            return this.color.equals(other.color)
+            return this.colorIndex == other.colorIndex
                     && this.year == other.year
+                    && this.hash == other.hash
                     && this.description.equals(other.description);
         } else {
             return false;
@@ -150,8 +357,8 @@ public class GolfBall implements Comparable<GolfBall> {
     }
 
     // Returns:
-    //   - A unique hash code value for this GolfBall
+    //   - A unique hash code value for this GolfBall, computed once at construction
     public int hashCode() {
-        return 31 * this.description.hashCode() + 31 * (this.year + 31 * this.color.hashCode());
+        return this.hash;
     }
 }
@@ -0,0 +1,298 @@
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+// A Bloom filter over golf balls: a bit array that answers "definitely not present" or
+// "possibly present" for any golf ball in constant time. Each golf ball sets a fixed
+// number of bits chosen by hashing it, so a golf ball with any of its bits clear was
+// never added. Golf balls are never removed, so the filter can only err towards
+// "possibly present", at a rate set when it is created.
+//
+// Bits are set atomically, so one filter can be shared by copies of a collection and
+// read while it is being added to. The filter also counts how the lookups it answers
+// turn out, to show how effective it is.
+public class GolfBallBloomFilter {
+    private static final int MIN_CAPACITY = 1024;
+
+    private final double falsePositiveRate;
+    private final int capacity;
+    private final int hashCount;
+    private final long bitCount;
+    private final AtomicLongArray bits;
+    private final LongAdder definiteMisses;
+    private final LongAdder hits;
+    private final LongAdder falsePositives;
+
+    // Behavior:
+    //   - Creates an empty filter sized so that, until it holds the given number of golf
+    //     balls, lookups of absent golf balls are reported as possibly present at about
+    //     the given rate
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the capacity is negative or the rate is
+    //     not strictly between 0 and 1
+    // Parameters:
+    //   - int capacity - the number of golf balls the filter is sized for
+    //   - double falsePositiveRate - the target rate of false "possibly present" answers
+    public GolfBallBloomFilter(int capacity, double falsePositiveRate) {
+        this(capacity, falsePositiveRate, new LongAdder(), new LongAdder(), new LongAdder());
+    }
+
+    // Behavior:
+    //   - Creates an empty filter like the public constructor does, counting lookups
+    //     into the given counters
+    // Parameters:
+    //   - int capacity - the number of golf balls the filter is sized for
+    //   - double falsePositiveRate - the target rate of false "possibly present" answers
+    //   - LongAdder definiteMisses - counts lookups answered as definitely absent
+    //   - LongAdder hits - counts lookups passed on that were found
+    //   - LongAdder falsePositives - counts lookups passed on that were not found
+    private GolfBallBloomFilter(int capacity, double falsePositiveRate,
+                                LongAdder definiteMisses, LongAdder hits,
+                                LongAdder falsePositives) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Invalid false positive rate: "
+                                               + falsePositiveRate);
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.capacity = Math.max(capacity, MIN_CAPACITY);
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate)
+                                            / (ln2 * ln2));
+        this.bitCount = (optimalBits + 63) & ~63L;
+        this.hashCount = Math.max(1, (int) Math.round(
+                (double) bitCount / this.capacity * ln2));
+        this.bits = new AtomicLongArray(Math.toIntExact(bitCount >>> 6));
+        this.definiteMisses = definiteMisses;
+        this.hits = hits;
+        this.falsePositives = falsePositives;
+    }
+
+    // Behavior:
+    //   - Creates a filter sized for the given golf balls and holding all of them
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the rate is not strictly between 0 and 1
+    // Returns:
+    //   - The new filter
+    // Parameters:
+    //   - Iterable<GolfBall> golfBalls - the golf balls to add
+    //   - int count - the number of golf balls to size the filter for
+    //   - double falsePositiveRate - the target rate of false "possibly present" answers
+    public static GolfBallBloomFilter of(Iterable<GolfBall> golfBalls, int count,
+                                         double falsePositiveRate) {
+        GolfBallBloomFilter filter = new GolfBallBloomFilter(count, falsePositiveRate);
+        for (GolfBall golfBall : golfBalls) {
+            filter.add(golfBall);
+        }
+        return filter;
+    }
+
+    // Behavior:
+    //   - Creates a filter with the same false positive rate as this one, sized for the
+    //     given golf balls and holding all of them. The new filter keeps counting into
+    //     this filter's counters, so its effectiveness is reported across rebuilds.
+    // Returns:
+    //   - The new filter
+    // Parameters:
+    //   - Iterable<GolfBall> golfBalls - the golf balls to add
+    //   - int capacity - the number of golf balls to size the filter for
+    public GolfBallBloomFilter rebuild(Iterable<GolfBall> golfBalls, int capacity) {
+        GolfBallBloomFilter filter = new GolfBallBloomFilter(capacity, falsePositiveRate,
+                definiteMisses, hits, falsePositives);
+        for (GolfBall golfBall : golfBalls) {
+            filter.add(golfBall);
+        }
+        return filter;
+    }
+
+    // Behavior:
+    //   - Sets the bits of the given golf ball
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to add, which is not null
+    public void add(GolfBall golfBall) {
+        long hash = hash(golfBall.getColorIndex(), golfBall.getYear(),
+                         golfBall.getDescription().hashCode());
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(first + i * second);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0
+                    && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    // Returns:
+    //   - false if the given golf ball was definitely never added
+    //   - true if the given golf ball may have been added
+    // Parameters:
+    //   - GolfBall golfBall - the golf ball to look for, which is not null
+    public boolean mightContain(GolfBall golfBall) {
+        return mightContain(golfBall.getColorIndex(), golfBall.getYear(),
+                            golfBall.getDescription().hashCode());
+    }
+
+    // Returns:
+    //   - false if no golf ball with the given color, year, and description was ever
+    //     added
+    //   - true if such a golf ball may have been added
+    // Parameters:
+    //   - int colorIndex - the index of the golf ball's color
+    //   - int year - the year the golf ball was obtained
+    //   - CharSequence description - the golf ball's description, which is not null
+    public boolean mightContain(int colorIndex, int year, CharSequence description) {
+        return mightContain(colorIndex, year, GolfBall.descriptionHashOf(description));
+    }
+
+    // Returns:
+    //   - false if no golf ball with the given color, year, and description hash was
+    //     ever added
+    //   - true if such a golf ball may have been added
+    // Parameters:
+    //   - int colorIndex - the index of the golf ball's color
+    //   - int year - the year the golf ball was obtained
+    //   - int descriptionHash - the hash code of the golf ball's description
+    private boolean mightContain(int colorIndex, int year, int descriptionHash) {
+        long hash = hash(colorIndex, year, descriptionHash);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(first + i * second);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Behavior:
+    //   - Counts a lookup the filter answered on its own as definitely absent
+    public void recordDefiniteMiss() {
+        definiteMisses.increment();
+    }
+
+    // Behavior:
+    //   - Counts a lookup the filter passed on that was found in the collection
+    public void recordHit() {
+        hits.increment();
+    }
+
+    // Behavior:
+    //   - Counts a lookup the filter passed on that was not found in the collection
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    // Returns:
+    //   - The number of lookups answered as definitely absent without searching the tree
+    public long getDefiniteMisses() {
+        return definiteMisses.sum();
+    }
+
+    // Returns:
+    //   - The number of lookups passed on to the tree that found their golf ball
+    public long getHits() {
+        return hits.sum();
+    }
+
+    // Returns:
+    //   - The number of lookups passed on to the tree that did not find their golf ball
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    // Returns:
+    //   - The fraction of lookups for absent golf balls that the filter failed to
+    //     answer on its own, or 0 if there have been none
+    public double getObservedFalsePositiveRate() {
+        long misses = getDefiniteMisses() + getFalsePositives();
+        return misses == 0 ? 0 : (double) getFalsePositives() / misses;
+    }
+
+    // Returns:
+    //   - The number of golf balls the filter is sized for
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Returns:
+    //   - The target false positive rate the filter was sized for
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    // Returns:
+    //   - The number of hash functions each golf ball sets a bit for
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    // Returns:
+    //   - The number of bits in the filter
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    // Returns:
+    //   - A map from each counter and setting of the filter to its current value
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        values.put("capacity", capacity);
+        values.put("bits", bitCount);
+        values.put("hashes", hashCount);
+        values.put("definiteMisses", getDefiniteMisses());
+        values.put("hits", getHits());
+        values.put("falsePositives", getFalsePositives());
+        return values;
+    }
+
+    // Returns:
+    //   - A String listing the filter's counters and settings
+    public String toString() {
+        return "GolfBallBloomFilter" + snapshot();
+    }
+
+    // Returns:
+    //   - The bit chosen by the given combined hash
+    // Parameters:
+    //   - int hash - a combination of the golf ball's two hashes
+    private long index(int hash) {
+        return (hash & 0xFFFFFFFFL) % bitCount;
+    }
+
+    // Returns:
+    //   - 64 well-mixed bits derived from a golf ball's fields, so that the low and high
+    //     halves can be used as two independent hashes. The color and year fit in 64
+    //     bits together and are mixed without losing any of them before the
+    //     description's hash is folded in, so golf balls only share all of their bits
+    //     when every field matches or by chance. GolfBall.hashCode is not used because
+    //     it adds its fields together, so golf balls whose years and description hashes
+    //     offset each other would always collide.
+    // Parameters:
+    //   - int colorIndex - the index of the golf ball's color
+    //   - int year - the year the golf ball was obtained
+    //   - int descriptionHash - the hash code of the golf ball's description
+    private static long hash(int colorIndex, int year, int descriptionHash) {
+        long fields = mix(((long) colorIndex << 32) | (year & 0xFFFFFFFFL));
+        return mix(fields ^ descriptionHash);
+    }
+
+    // Returns:
+    //   - The given bits mixed so that every output bit depends on every input bit.
+    //     Different inputs always give different outputs.
+    // Parameters:
+    //   - long value - the bits to mix
+    private static long mix(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB93FE5A339B9L;
+        return hash ^ (hash >>> 33);
+    }
+}
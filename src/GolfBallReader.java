@@ -0,0 +1,218 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+// Reads golf balls one at a time from input in the same three-line format that
+// CollectionManager.save writes: a color line, a year line, and a description line.
+// Input is read through a buffered channel in a loop, so large files are streamed
+// without recursion and without the per-line overhead of a Scanner.
+public class GolfBallReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetDecoder decoder;
+    private ByteBuffer line;
+    private CharBuffer chars;
+    private int lineNumber;
+    private boolean endOfInput;
+
+    // Behavior:
+    //   - Creates a reader that reads golf balls from the given channel
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given channel is null
+    // Parameters:
+    //   - ReadableByteChannel channel - the channel to read UTF-8 encoded input from
+    public GolfBallReader(ReadableByteChannel channel) {
+        this(channel, 0);
+    }
+
+    // Behavior:
+    //   - Creates a reader that reads golf balls from the given channel, which holds
+    //     part of a larger input. Line numbers in error messages count from the start
+    //     of the larger input.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given channel is null or the number
+    //     of lines before it is negative
+    // Parameters:
+    //   - ReadableByteChannel channel - the channel to read UTF-8 encoded input from
+    //   - int linesBefore - the number of lines of the larger input before this part
+    public GolfBallReader(ReadableByteChannel channel, int linesBefore) {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel cannot be null");
+        }
+        if (linesBefore < 0) {
+            throw new IllegalArgumentException("Lines before cannot be negative");
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.buffer.flip();
+        this.decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.line = ByteBuffer.allocate(256);
+        this.chars = CharBuffer.allocate(256);
+        this.lineNumber = linesBefore;
+        this.endOfInput = false;
+    }
+
+    // Behavior:
+    //   - Opens the file at the given path for reading golf balls
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given path is null
+    //   - Throws an IOException if the file cannot be opened
+    // Returns:
+    //   - A reader over the contents of the file
+    // Parameters:
+    //   - Path path - the file to read
+    public static GolfBallReader open(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        return new GolfBallReader(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    // Behavior:
+    //   - Reads the next golf ball from the input
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the next record is malformed or
+    //     incomplete; the message includes the line number of the problem
+    //   - Throws an IOException if the input cannot be read
+    // Returns:
+    //   - The next golf ball, or null if the end of the input has been reached
+    public GolfBall next() throws IOException {
+        if (!readLine()) {
+            return null;
+        }
+        int colorIndex = GolfBall.getColorIndex(chars);
+        if (colorIndex < 0) {
+            throw error("Invalid color: " + chars + " is not present in COLORS");
+        }
+
+        if (!readLine()) {
+            throw error("missing year after color \"" + GolfBall.getColorName(colorIndex)
+                        + "\"");
+        }
+        int year;
+        try {
+            year = GolfBall.parseYear(chars);
+        } catch (IllegalArgumentException e) {
+            throw error(e.getMessage());
+        }
+
+        if (!readLine()) {
+            throw error("missing description after year " + year);
+        }
+        return new GolfBall(colorIndex, year, chars.toString());
+    }
+
+    // Returns:
+    //   - The number of lines read so far, plus any lines before this part of the input
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    // Behavior:
+    //   - Closes the underlying channel
+    // Exceptions:
+    //   - Throws an IOException if the channel cannot be closed
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Behavior:
+    //   - Reads the next line of input, without its line terminator, into chars
+    // Exceptions:
+    //   - Throws an IOException if the input cannot be read
+    // Returns:
+    //   - true if a line was read
+    //   - false if there is no more input
+    private boolean readLine() throws IOException {
+        line.clear();
+        boolean found = false;
+        while (!found) {
+            if (!buffer.hasRemaining() && !fill()) {
+                if (line.position() == 0) {
+                    return false;
+                }
+                break;
+            }
+            while (buffer.hasRemaining()) {
+                byte next = buffer.get();
+                if (next == '\n') {
+                    found = true;
+                    break;
+                }
+                if (!line.hasRemaining()) {
+                    line = grow(line);
+                }
+                line.put(next);
+            }
+        }
+        if (line.position() > 0 && line.get(line.position() - 1) == '\r') {
+            line.position(line.position() - 1);
+        }
+        lineNumber++;
+        decode();
+        return true;
+    }
+
+    // Behavior:
+    //   - Refills the read buffer from the channel
+    // Exceptions:
+    //   - Throws an IOException if the input cannot be read
+    // Returns:
+    //   - true if more bytes are available
+    //   - false if the end of the input has been reached
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+        buffer.clear();
+        int read = 0;
+        while (read == 0) {
+            read = channel.read(buffer);
+        }
+        buffer.flip();
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+        return true;
+    }
+
+    // Behavior:
+    //   - Decodes the bytes of the current line into chars, reusing its storage
+    private void decode() {
+        line.flip();
+        chars.clear();
+        if (chars.capacity() < line.remaining()) {
+            chars = CharBuffer.allocate(line.capacity());
+        }
+        decoder.reset();
+        decoder.decode(line, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+    }
+
+    // Returns:
+    //   - An IllegalArgumentException describing a problem on the current line
+    // Parameters:
+    //   - String message - a description of the problem
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Line " + lineNumber + ": " + message);
+    }
+
+    // Returns:
+    //   - A copy of the given buffer with twice the capacity and the same contents
+    // Parameters:
+    //   - ByteBuffer full - the buffer to grow
+    private static ByteBuffer grow(ByteBuffer full) {
+        ByteBuffer larger = ByteBuffer.allocate(full.capacity() * 2);
+        full.flip();
+        larger.put(full);
+        return larger;
+    }
+}
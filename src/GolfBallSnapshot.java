@@ -0,0 +1,248 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+// Reads golf balls from a compact binary snapshot of a collection. A snapshot starts
+// with a fixed header holding the record count and a checksum of everything after the
+// header, followed by a dictionary of distinct descriptions and then one record per
+// golf ball in sorted order. Each record is the color's index as a single byte, the
+// year as a variable-length integer, and the index of its description in the
+// dictionary.
+//
+// Counts and lengths are checked against the size of the file before anything is
+// allocated for them, since the checksum can only be verified once everything has been
+// read. Snapshots are written to a temporary file that replaces the old one only once
+// it is complete, so a failed save never destroys the previous snapshot.
+public class GolfBallSnapshot implements Closeable {
+    private static final int MAGIC = 0x47424C53;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MIN_RECORD_SIZE = 3;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final DataInputStream input;
+    private final CheckedInputStream checked;
+    private final int expectedChecksum;
+    private final int size;
+    private final String[] descriptions;
+    private int remaining;
+
+    // Behavior:
+    //   - Opens the snapshot in the given channel and reads its header and dictionary
+    // Exceptions:
+    //   - Throws an IOException if the input is not a valid snapshot or cannot be read
+    // Parameters:
+    //   - ReadableByteChannel channel - the channel to read the snapshot from
+    //   - long length - the number of bytes in the snapshot
+    private GolfBallSnapshot(ReadableByteChannel channel, long length) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                throw new IOException("Snapshot header is truncated");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a golf ball snapshot");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        this.size = header.getInt();
+        int dictionarySize = header.getInt();
+        this.expectedChecksum = header.getInt();
+        long body = length - HEADER_SIZE;
+        if (size < 0 || dictionarySize < 0 || dictionarySize > size
+                || (long) size * MIN_RECORD_SIZE + dictionarySize > body) {
+            throw new IOException("Snapshot header is corrupt");
+        }
+        this.checked = new CheckedInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel), BUFFER_SIZE), new CRC32());
+        this.input = new DataInputStream(checked);
+        this.descriptions = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            int descriptionLength = readVarint();
+            if (descriptionLength < 0 || descriptionLength > body) {
+                throw new IOException("Snapshot is corrupt");
+            }
+            byte[] bytes = new byte[descriptionLength];
+            input.readFully(bytes);
+            descriptions[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        this.remaining = size;
+        verifyIfDone();
+    }
+
+    // Behavior:
+    //   - Opens the snapshot file at the given path
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given path is null
+    //   - Throws an IOException if the file is not a valid snapshot or cannot be read
+    // Returns:
+    //   - A snapshot positioned at its first golf ball
+    // Parameters:
+    //   - Path path - the snapshot file to read
+    public static GolfBallSnapshot open(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new GolfBallSnapshot(channel, channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Behavior:
+    //   - Writes the given golf balls to a snapshot file at the given path, replacing
+    //     any existing file. The golf balls are iterated twice: once to build the
+    //     description dictionary and once to write the records. The snapshot is written
+    //     and forced to disk under a temporary name, then moved over the given path.
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given path or golf balls are null
+    //   - Throws an IOException if the file cannot be written
+    // Parameters:
+    //   - Path path - the file to write the snapshot to
+    //   - Iterable<GolfBall> golfBalls - the golf balls to save, in sorted order
+    public static void write(Path path, Iterable<GolfBall> golfBalls) throws IOException {
+        if (path == null || golfBalls == null) {
+            throw new IllegalArgumentException("Path and golf balls cannot be null");
+        }
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int count = 0;
+        for (GolfBall golfBall : golfBalls) {
+            dictionary.putIfAbsent(golfBall.getDescription(), dictionary.size());
+            count++;
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(channel), BUFFER_SIZE), new CRC32());
+            DataOutputStream output = new DataOutputStream(checked);
+            for (String description : dictionary.keySet()) {
+                byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+                writeVarint(output, bytes.length);
+                output.write(bytes);
+            }
+            for (GolfBall golfBall : golfBalls) {
+                output.writeByte(golfBall.getColorIndex());
+                writeVarint(output, (golfBall.getYear() << 1) ^ (golfBall.getYear() >> 31));
+                writeVarint(output, dictionary.get(golfBall.getDescription()));
+            }
+            output.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(dictionary.size())
+                  .putInt((int) checked.getChecksum().getValue());
+            header.flip();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE,
+                   StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Returns:
+    //   - The number of golf balls in the snapshot
+    public int size() {
+        return size;
+    }
+
+    // Behavior:
+    //   - Reads the next golf ball from the snapshot. Once the last golf ball has been
+    //     read, the checksum in the header is verified.
+    // Exceptions:
+    //   - Throws an IOException if the snapshot is corrupt or cannot be read
+    // Returns:
+    //   - The next golf ball in sorted order, or null if every golf ball has been read
+    public GolfBall next() throws IOException {
+        if (remaining == 0) {
+            return null;
+        }
+        int colorIndex = input.readUnsignedByte();
+        int zigzag = readVarint();
+        int year = (zigzag >>> 1) ^ -(zigzag & 1);
+        int descriptionIndex = readVarint();
+        if (descriptionIndex < 0 || descriptionIndex >= descriptions.length) {
+            throw new IOException("Snapshot record refers to a missing description");
+        }
+        GolfBall golfBall;
+        try {
+            golfBall = new GolfBall(colorIndex, year, descriptions[descriptionIndex]);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Snapshot record is corrupt", e);
+        }
+        remaining--;
+        verifyIfDone();
+        return golfBall;
+    }
+
+    // Behavior:
+    //   - Closes the underlying file
+    // Exceptions:
+    //   - Throws an IOException if the file cannot be closed
+    public void close() throws IOException {
+        input.close();
+    }
+
+    // Behavior:
+    //   - Checks the checksum of the snapshot once every record has been read
+    // Exceptions:
+    //   - Throws an IOException if the checksum does not match the header
+    private void verifyIfDone() throws IOException {
+        if (remaining == 0 && (int) checked.getChecksum().getValue() != expectedChecksum) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+    }
+
+    // Behavior:
+    //   - Reads an unsigned variable-length integer, seven bits per byte with the high
+    //     bit marking that more bytes follow
+    // Exceptions:
+    //   - Throws an IOException if the integer is malformed or cannot be read
+    // Returns:
+    //   - The integer that was read
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int next = input.readUnsignedByte();
+            value |= (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Snapshot contains a malformed integer");
+    }
+
+    // Behavior:
+    //   - Writes the given integer as an unsigned variable-length integer
+    // Exceptions:
+    //   - Throws an IOException if the output cannot be written
+    // Parameters:
+    //   - DataOutputStream output - the output to write to
+    //   - int value - the integer to write
+    private static void writeVarint(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+}
@@ -0,0 +1,274 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Reads a large file in the three-line text format using every core. The file is
+// memory-mapped and split into chunks that each start on a record boundary (a line
+// whose number is a multiple of three). Each chunk is parsed and sorted by its own
+// fork-join task, and the sorted chunks are merged pairwise, also in parallel, into a
+// single sorted sequence without duplicates. That sequence is ready to be built into a
+// balanced tree in one pass by CollectionManager.addAll.
+public class ParallelLoader {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+
+    // Behavior:
+    //   - Creates a loader that runs on the common fork-join pool
+    public ParallelLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    // Behavior:
+    //   - Creates a loader that runs on the given fork-join pool
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given pool is null
+    // Parameters:
+    //   - ForkJoinPool pool - the pool to parse and merge chunks on
+    public ParallelLoader(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        this.pool = pool;
+    }
+
+    // Behavior:
+    //   - Reads every golf ball in the given file in parallel
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given path is null or the input is
+    //     malformed; the message includes the line number of the problem
+    //   - Throws an IOException if the file cannot be read or is larger than 2 GB
+    // Returns:
+    //   - The distinct golf balls in the file, in sorted order
+    // Parameters:
+    //   - Path path - the file to read
+    public List<GolfBall> read(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        ByteBuffer input;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to load in parallel: " + path);
+            }
+            input = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int chunks = (int) Math.max(1, Math.min(
+                (long) pool.getParallelism() * CHUNKS_PER_THREAD,
+                input.limit() / MIN_CHUNK_SIZE));
+        int[] starts = new int[chunks + 1];
+        int[] linesBefore = new int[chunks + 1];
+        findBoundaries(input, starts, linesBefore);
+
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        GolfBall[] golfBalls = pool.invoke(new SortTask(input, starts, linesBefore, 0, chunks,
+                                                        failure));
+        Exception problem = failure.get();
+        if (problem instanceof IOException) {
+            throw (IOException) problem;
+        } else if (problem != null) {
+            throw (RuntimeException) problem;
+        }
+        return Arrays.asList(golfBalls);
+    }
+
+    // Behavior:
+    //   - Splits the given input into chunks of about the same size that each start on
+    //     a record boundary. The lines in each equal-sized slice of the input are
+    //     counted in parallel, and each chunk start is then moved forward from its
+    //     slice's start to the next line whose number is a multiple of three.
+    // Parameters:
+    //   - ByteBuffer input - the whole input
+    //   - int[] starts - filled with the offset of each chunk, followed by the length of
+    //     the input
+    //   - int[] linesBefore - filled with the number of lines before each chunk
+    private void findBoundaries(ByteBuffer input, int[] starts, int[] linesBefore) {
+        int chunks = starts.length - 1;
+        int[] sliceStarts = new int[chunks + 1];
+        for (int i = 0; i <= chunks; i++) {
+            sliceStarts[i] = (int) ((long) input.limit() * i / chunks);
+        }
+        int[] newlines = new int[chunks];
+        List<ForkJoinTask<?>> counts = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int slice = i;
+            counts.add(pool.submit(() -> {
+                int count = 0;
+                for (int j = sliceStarts[slice]; j < sliceStarts[slice + 1]; j++) {
+                    if (input.get(j) == '\n') {
+                        count++;
+                    }
+                }
+                newlines[slice] = count;
+            }));
+        }
+        for (ForkJoinTask<?> count : counts) {
+            count.join();
+        }
+
+        int lines = 0;
+        for (int i = 0; i < chunks; i++) {
+            int start = sliceStarts[i];
+            int before = lines;
+            while (start < input.limit() && (start > 0 && input.get(start - 1) != '\n'
+                                             || before % 3 != 0)) {
+                if (input.get(start) == '\n') {
+                    before++;
+                }
+                start++;
+            }
+            if (i > 0 && start < starts[i - 1]) {
+                start = starts[i - 1];
+                before = linesBefore[i - 1];
+            }
+            starts[i] = start;
+            linesBefore[i] = before;
+            lines += newlines[i];
+        }
+        starts[chunks] = input.limit();
+        linesBefore[chunks] = lines;
+    }
+
+    // Returns:
+    //   - The distinct golf balls in both of the given sorted arrays, in sorted order
+    // Parameters:
+    //   - GolfBall[] first - the first sorted array
+    //   - GolfBall[] second - the second sorted array
+    private static GolfBall[] merge(GolfBall[] first, GolfBall[] second) {
+        GolfBall[] merged = new GolfBall[first.length + second.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < first.length || j < second.length) {
+            GolfBall next;
+            if (j == second.length
+                    || i < first.length && first[i].compareTo(second[j]) <= 0) {
+                next = first[i];
+                i++;
+            } else {
+                next = second[j];
+                j++;
+            }
+            if (count == 0 || merged[count - 1].compareTo(next) != 0) {
+                merged[count] = next;
+                count++;
+            }
+        }
+        return count == merged.length ? merged : Arrays.copyOf(merged, count);
+    }
+
+    // Parses and sorts a range of chunks, splitting the range in half and merging the
+    // two sorted halves until each task handles a single chunk.
+    @SuppressWarnings("serial")
+    private static class SortTask extends RecursiveTask<GolfBall[]> {
+        private final ByteBuffer input;
+        private final int[] starts;
+        private final int[] linesBefore;
+        private final int from;
+        private final int to;
+        private final AtomicReference<Exception> failure;
+
+        // Behavior:
+        //   - Creates a task for the given range of chunks
+        // Parameters:
+        //   - ByteBuffer input - the whole input
+        //   - int[] starts - the offset of each chunk, followed by the length of the input
+        //   - int[] linesBefore - the number of lines before each chunk
+        //   - int from - the first chunk in the range
+        //   - int to - one past the last chunk in the range
+        //   - AtomicReference<Exception> failure - where the first problem found is kept
+        public SortTask(ByteBuffer input, int[] starts, int[] linesBefore, int from, int to,
+                        AtomicReference<Exception> failure) {
+            this.input = input;
+            this.starts = starts;
+            this.linesBefore = linesBefore;
+            this.from = from;
+            this.to = to;
+            this.failure = failure;
+        }
+
+        // Returns:
+        //   - The distinct golf balls in the range of chunks, in sorted order, or an
+        //     empty array if any chunk could not be read
+        protected GolfBall[] compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                SortTask left = new SortTask(input, starts, linesBefore, from, middle, failure);
+                left.fork();
+                GolfBall[] right = new SortTask(input, starts, linesBefore, middle, to,
+                                                failure).compute();
+                return merge(left.join(), right);
+            }
+            if (failure.get() != null) {
+                return new GolfBall[0];
+            }
+            ByteBuffer chunk = input.slice(starts[from], starts[from + 1] - starts[from]);
+            List<GolfBall> golfBalls = new ArrayList<>();
+            try (GolfBallReader reader = new GolfBallReader(new BufferChannel(chunk),
+                                                            linesBefore[from])) {
+                GolfBall next = reader.next();
+                while (next != null) {
+                    golfBalls.add(next);
+                    next = reader.next();
+                }
+            } catch (IOException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+                return new GolfBall[0];
+            }
+            GolfBall[] sorted = golfBalls.toArray(new GolfBall[0]);
+            Arrays.sort(sorted);
+            // Merging with nothing drops the duplicates within the chunk
+            return merge(sorted, new GolfBall[0]);
+        }
+    }
+
+    // Presents the bytes remaining in a buffer as a channel, so that a chunk of a mapped
+    // file can be read by a GolfBallReader without copying it first.
+    private static class BufferChannel implements ReadableByteChannel {
+        private final ByteBuffer source;
+        private boolean open;
+
+        // Behavior:
+        //   - Creates a channel over the remaining bytes of the given buffer
+        // Parameters:
+        //   - ByteBuffer source - the bytes to read
+        public BufferChannel(ByteBuffer source) {
+            this.source = source;
+            this.open = true;
+        }
+
+        // Behavior:
+        //   - Copies as many bytes as fit from the source into the given buffer
+        // Returns:
+        //   - The number of bytes copied, or -1 if the source is used up
+        // Parameters:
+        //   - ByteBuffer destination - the buffer to copy into
+        public int read(ByteBuffer destination) {
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(source.remaining(), destination.remaining());
+            destination.put(destination.position(), source, source.position(), count);
+            destination.position(destination.position() + count);
+            source.position(source.position() + count);
+            return count;
+        }
+
+        // Returns:
+        //   - true if the channel has not been closed
+        public boolean isOpen() {
+            return open;
+        }
+
+        // Behavior:
+        //   - Closes the channel
+        public void close() {
+            open = false;
+        }
+    }
+}
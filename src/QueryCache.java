@@ -0,0 +1,260 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// A bounded cache of query results, keyed by the color and range of years each query
+// covers. Every query covers a single color, and the cache keeps a version number for
+// each color that a change to the collection replaces for the colors it touched.
+// Results are cached under the version of their color, so results for other colors
+// stay valid, and results for a changed color are never asked for again and age out
+// like any other unused result. Results are stored as unmodifiable lists so that they
+// can be handed to any number of callers at once.
+//
+// A cache and all of its copies share one store of results, so copying a cache only
+// copies its version numbers. The store is a ConcurrentHashMap, so looking up a result
+// never takes a lock. When the store is full, the least recently used result is
+// evicted. Recency is approximate: each result is stamped with the number of results
+// stored so far when it is used, so lookups between two stores tie.
+public class QueryCache {
+    private final Store store;
+    private final long[] colorVersions;
+
+    // Represents the color, version of the color, and inclusive range of years that one
+    // query covers
+    private static class Query {
+        public final int colorIndex;
+        public final long version;
+        public final int fromYear;
+        public final int toYear;
+
+        // Behavior:
+        //   - Creates a query over the given color and years
+        // Parameters:
+        //   - int colorIndex - the index of the color the query covers
+        //   - long version - the version of the color the query was run against
+        //   - int fromYear - the earliest year the query covers
+        //   - int toYear - the latest year the query covers
+        public Query(int colorIndex, long version, int fromYear, int toYear) {
+            this.colorIndex = colorIndex;
+            this.version = version;
+            this.fromYear = fromYear;
+            this.toYear = toYear;
+        }
+
+        // Returns:
+        //   - true if the given object is a query over the same color, version and years
+        // Parameters:
+        //   - Object o - the object to compare to this query
+        public boolean equals(Object o) {
+            if (!(o instanceof Query)) {
+                return false;
+            }
+            Query other = (Query) o;
+            return colorIndex == other.colorIndex && version == other.version
+                    && fromYear == other.fromYear && toYear == other.toYear;
+        }
+
+        // Returns:
+        //   - A hash code consistent with equals
+        public int hashCode() {
+            int hash = 31 * colorIndex + Long.hashCode(version);
+            return 31 * (31 * hash + fromYear) + toYear;
+        }
+    }
+
+    // Represents one cached result and when it was last used
+    private static class Entry {
+        public final List<GolfBall> result;
+        public volatile long lastUsed;
+
+        // Behavior:
+        //   - Creates an entry for the given result, last used at the given time
+        // Parameters:
+        //   - List<GolfBall> result - the cached result
+        //   - long lastUsed - the number of results stored when it was last used
+        public Entry(List<GolfBall> result, long lastUsed) {
+            this.result = result;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    // Holds the results and counters shared by a cache and all of its copies
+    private static class Store {
+        public final int maxEntries;
+        public final ConcurrentHashMap<Query, Entry> entries;
+        public final AtomicLong stored;
+        public final AtomicLong versions;
+        public final LongAdder hits;
+        public final LongAdder misses;
+        public final LongAdder invalidations;
+
+        // Behavior:
+        //   - Creates an empty store holding at most the given number of results
+        // Parameters:
+        //   - int maxEntries - the most results the store holds at once
+        public Store(int maxEntries) {
+            this.maxEntries = maxEntries;
+            this.entries = new ConcurrentHashMap<>();
+            this.stored = new AtomicLong();
+            this.versions = new AtomicLong();
+            this.hits = new LongAdder();
+            this.misses = new LongAdder();
+            this.invalidations = new LongAdder();
+        }
+
+        // Behavior:
+        //   - Evicts the least recently used results until the store is within its
+        //     limit. Only one thread evicts at a time.
+        public synchronized void evict() {
+            while (entries.size() > maxEntries) {
+                Map.Entry<Query, Entry> oldest = null;
+                for (Map.Entry<Query, Entry> entry : entries.entrySet()) {
+                    if (oldest == null
+                            || entry.getValue().lastUsed < oldest.getValue().lastUsed) {
+                        oldest = entry;
+                    }
+                }
+                entries.remove(oldest.getKey(), oldest.getValue());
+            }
+        }
+    }
+
+    // Behavior:
+    //   - Creates an empty cache holding at most the given number of results
+    // Exceptions:
+    //   - Throws an IllegalArgumentException if the given limit is less than 1
+    // Parameters:
+    //   - int maxEntries - the most results the cache holds at once
+    public QueryCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxEntries);
+        }
+        this.store = new Store(maxEntries);
+        this.colorVersions = new long[Long.SIZE];
+    }
+
+    // Behavior:
+    //   - Creates a cache over the given store with the given color versions
+    // Parameters:
+    //   - Store store - the results and counters to share
+    //   - long[] colorVersions - the version of each color, which the cache then owns
+    private QueryCache(Store store, long[] colorVersions) {
+        this.store = store;
+        this.colorVersions = colorVersions;
+    }
+
+    // Returns:
+    //   - A new cache that sees the same results as this one and counts into the same
+    //     counters, made in O(1) time. Later changes to the colors of either cache are
+    //     not seen by the other.
+    public QueryCache copy() {
+        return new QueryCache(store, colorVersions.clone());
+    }
+
+    // Returns:
+    //   - The cached result of the query over the given color and years, marking it as
+    //     recently used, or null if it is not cached
+    // Parameters:
+    //   - int colorIndex - the index of the color the query covers
+    //   - int fromYear - the earliest year the query covers
+    //   - int toYear - the latest year the query covers
+    public List<GolfBall> get(int colorIndex, int fromYear, int toYear) {
+        Entry entry = store.entries.get(query(colorIndex, fromYear, toYear));
+        if (entry == null) {
+            store.misses.increment();
+            return null;
+        }
+        store.hits.increment();
+        long now = store.stored.get();
+        if (entry.lastUsed != now) {
+            entry.lastUsed = now;
+        }
+        return entry.result;
+    }
+
+    // Behavior:
+    //   - Caches the result of the query over the given color and years, evicting the
+    //     least recently used results if the cache is full
+    // Returns:
+    //   - An unmodifiable view of the given result, which is what the cache holds
+    // Parameters:
+    //   - int colorIndex - the index of the color the query covers
+    //   - int fromYear - the earliest year the query covers
+    //   - int toYear - the latest year the query covers
+    //   - List<GolfBall> result - the golf balls the query found, which must not be
+    //     changed afterward
+    public List<GolfBall> put(int colorIndex, int fromYear, int toYear,
+                              List<GolfBall> result) {
+        List<GolfBall> shared = Collections.unmodifiableList(result);
+        Entry entry = new Entry(shared, store.stored.incrementAndGet());
+        store.entries.put(query(colorIndex, fromYear, toYear), entry);
+        if (store.entries.size() > store.maxEntries) {
+            store.evict();
+        }
+        return shared;
+    }
+
+    // Behavior:
+    //   - Gives the colors whose bits are set in the given mask new versions, so that
+    //     this cache no longer sees any result cached for them before
+    // Parameters:
+    //   - long colorMask - bit i is set if the color with index i changed
+    public void invalidate(long colorMask) {
+        while (colorMask != 0) {
+            int colorIndex = Long.numberOfTrailingZeros(colorMask);
+            colorVersions[colorIndex] = store.versions.incrementAndGet();
+            store.invalidations.increment();
+            colorMask &= colorMask - 1;
+        }
+    }
+
+    // Returns:
+    //   - The number of results currently cached for this cache and its copies
+    public int size() {
+        return store.entries.size();
+    }
+
+    // Returns:
+    //   - The most results the cache holds at once
+    public int getMaxEntries() {
+        return store.maxEntries;
+    }
+
+    // Returns:
+    //   - The number of queries answered from the cache
+    public long getHits() {
+        return store.hits.sum();
+    }
+
+    // Returns:
+    //   - The number of queries that were not cached and had to be run
+    public long getMisses() {
+        return store.misses.sum();
+    }
+
+    // Returns:
+    //   - The number of times a change made the cached results for a color stale
+    public long getInvalidations() {
+        return store.invalidations.sum();
+    }
+
+    // Returns:
+    //   - A String listing the cache's counters
+    public String toString() {
+        return "QueryCache{entries=" + size() + ", maxEntries=" + getMaxEntries()
+                + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", invalidations=" + getInvalidations() + "}";
+    }
+
+    // Returns:
+    //   - The key of the query over the given color and years at its current version
+    // Parameters:
+    //   - int colorIndex - the index of the color the query covers
+    //   - int fromYear - the earliest year the query covers
+    //   - int toYear - the latest year the query covers
+    private Query query(int colorIndex, int fromYear, int toYear) {
+        long version = colorIndex >= 0 && colorIndex < colorVersions.length
+                ? colorVersions[colorIndex] : 0;
+        return new Query(colorIndex, version, fromYear, toYear);
+    }
+}
@@ -2,7 +2,15 @@ import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.*;
+import java.lang.management.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
 
 import javax.swing.plaf.synth.Region;
 
@@ -51,6 +59,22 @@ public class Testing {
         assertEquals(-1, GolfBall.getColorIndex("turquoise"));
     }
 
+    @Test
+    @DisplayName("Test GolfBall getColorIndex")
+    public void testGolfBallGetColorIndex() {
+        GolfBall test = new GolfBall("PuRpLe", 2025, "test golf ball");
+        assertEquals(7, test.getColorIndex());
+        assertEquals("purple", test.getColor());
+        assertEquals(GolfBall.getColorIndex("purple"), test.getColorIndex());
+        assertEquals("purple", GolfBall.getColorName(7));
+        assertThrows(IllegalArgumentException.class, () -> {
+            GolfBall.getColorName(10);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            new GolfBall("white", 2025, null);
+        });
+    }
+
     @Test
     @DisplayName("Test getColor")
     public void testGetColor() {
@@ -140,6 +164,118 @@ public class Testing {
         });
     }
 
+    @Test
+    @DisplayName("Test add and contains with sorted input")
+    public void testAddSortedInput() {
+        CollectionManager test = new CollectionManager();
+        for (int year = 0; year < 100000; year++) {
+            test.add(new GolfBall("white", year, "WJGA State Championship"));
+        }
+        for (int year = 0; year < 100000; year++) {
+            assertTrue(test.contains(new GolfBall("white", year, "WJGA State Championship")));
+        }
+        assertFalse(test.contains(new GolfBall("white", 100000, "WJGA State Championship")));
+    }
+
+    @Test
+    @DisplayName("Test addAll")
+    public void testAddAll() throws FileNotFoundException {
+        Scanner input = new Scanner(new File("small.txt"));
+        CollectionManager expected = new CollectionManager(input);
+        CollectionManager test = new CollectionManager();
+        test.add(new GolfBall("red", 2016, "country flags"));
+        List<GolfBall> golfBalls = new ArrayList<>();
+        golfBalls.add(new GolfBall("black", 2016, "black and white soccer ball"));
+        golfBalls.add(new GolfBall("white", 2017, "WJGA State Championship"));
+        golfBalls.add(new GolfBall("red", 2016, "country flags"));
+        golfBalls.add(new GolfBall("white", 2016, "WJGA State Championship"));
+        golfBalls.add(new GolfBall("red", 2016, "red and white soccer ball"));
+        golfBalls.add(new GolfBall("white", 2017, "WJGA State Championship"));
+        test.addAll(golfBalls);
+        assertEquals(expected.toString(), test.toString());
+
+        List<GolfBall> sorted = new ArrayList<>();
+        for (int year = 0; year < 100000; year++) {
+            sorted.add(new GolfBall("blue", year, "bulk"));
+        }
+        test.addAll(sorted);
+        assertTrue(test.contains(new GolfBall("blue", 99999, "bulk")));
+        assertTrue(test.contains(new GolfBall("red", 2016, "country flags")));
+
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        test.save(new PrintStream(saved));
+        CollectionManager reloaded = new CollectionManager(new Scanner(saved.toString()));
+        assertEquals(test.toString(), reloaded.toString());
+        CollectionManager unordered = new CollectionManager();
+        unordered.addAll(Arrays.asList(new GolfBall("red", 2016, "b"),
+                                       new GolfBall("red", 2016, "c"),
+                                       new GolfBall("red", 2016, "a")));
+        assertEquals(Arrays.asList(new GolfBall("red", 2016, "a"),
+                                   new GolfBall("red", 2016, "b"),
+                                   new GolfBall("red", 2016, "c")), unordered.page(0, 3));
+        assertThrows(IllegalArgumentException.class, () -> {
+            test.addAll(null);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            test.addAll(Arrays.asList(new GolfBall("red", 2016, "x"), null));
+        });
+    }
+
+    @Test
+    @DisplayName("Test load")
+    public void testLoad() throws IOException {
+        CollectionManager expected = new CollectionManager(new Scanner(new File("medium.txt")));
+        CollectionManager test = new CollectionManager();
+        try (GolfBallReader reader = GolfBallReader.open(new File("medium.txt").toPath())) {
+            test.load(reader);
+        }
+        assertEquals(expected.toString(), test.toString());
+        assertThrows(IllegalArgumentException.class, () -> {
+            test.load(null);
+        });
+    }
+
+    @Test
+    @DisplayName("Test GolfBallReader")
+    public void testGolfBallReader() throws IOException {
+        GolfBallReader reader = reader("white\r\n2016\r\nWJGA State Championship\r\n"
+                                       + "red\n-5\n\n");
+        assertEquals(new GolfBall("white", 2016, "WJGA State Championship"), reader.next());
+        assertEquals(new GolfBall("red", -5, ""), reader.next());
+        assertNull(reader.next());
+        assertEquals(6, reader.getLineNumber());
+
+        GolfBallReader badYear = reader("white\n2016\ndesc\nred\n20x6\ndesc\n");
+        badYear.next();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> {
+            badYear.next();
+        });
+        assertTrue(e.getMessage().startsWith("Line 5:"));
+
+        GolfBallReader badColor = reader("turquoise\n2016\ndesc\n");
+        e = assertThrows(IllegalArgumentException.class, () -> {
+            badColor.next();
+        });
+        assertTrue(e.getMessage().startsWith("Line 1:"));
+
+        GolfBallReader incomplete = reader("white\n2016");
+        assertThrows(IllegalArgumentException.class, () -> {
+            incomplete.next();
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            new GolfBallReader(null);
+        });
+    }
+
+    // Returns:
+    //   - A GolfBallReader over the given text
+    // Parameters:
+    //   - String text - the text to read golf balls from
+    private static GolfBallReader reader(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return new GolfBallReader(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
     @Test
     @DisplayName("Test contains")
     public void testContains() {
@@ -155,6 +291,51 @@ public class Testing {
         });
     }
 
+    @Test
+    @DisplayName("Test contains by fields")
+    public void testContainsFields() {
+        CollectionManager test = new CollectionManager();
+        for (int i = 0; i < 1000; i++) {
+            test.add(new GolfBall(i % 2 == 0 ? "yellow" : "purple", 2000 + i % 10,
+                                  "ball " + i));
+        }
+        int yellow = GolfBall.getColorIndex(CharBuffer.wrap("xYELLOWx", 1, 7));
+        assertEquals(GolfBall.getColorIndex("yellow"), yellow);
+        assertEquals(-1, GolfBall.getColorIndex(CharBuffer.wrap("yellowish")));
+        assertEquals(-1, GolfBall.getColorIndex((CharSequence) null));
+        assertEquals(2004, GolfBall.parseYear(CharBuffer.wrap("y2004", 1, 5)));
+        assertEquals(-7, GolfBall.parseYear("-7"));
+        assertThrows(IllegalArgumentException.class, () -> GolfBall.parseYear("20x4"));
+        assertThrows(IllegalArgumentException.class, () -> GolfBall.parseYear("4294967296"));
+
+        assertTrue(test.contains(yellow, 2004, "ball 4"));
+        assertTrue(test.contains(yellow, 2004, CharBuffer.wrap("[ball 4]", 1, 7)));
+        assertFalse(test.contains(yellow, 2005, "ball 4"));
+        assertFalse(test.contains(yellow, 2004, "ball 40"));
+        assertFalse(test.contains(GolfBall.getColorIndex("purple"), 2004, "ball 4"));
+        assertThrows(IllegalArgumentException.class, () -> test.contains(-1, 2004, "ball 4"));
+        assertThrows(IllegalArgumentException.class, () -> test.contains(yellow, 2004, null));
+        GolfBall ball = new GolfBall(yellow, 2004, "ball 4");
+        assertEquals(ball.hashCode(), GolfBall.hashOf(yellow, 2004,
+                                                      CharBuffer.wrap("ball 4")));
+        assertEquals(0, ball.compareTo(yellow, 2004, CharBuffer.wrap("ball 4")));
+
+        GolfBallBloomFilter filter = test.enableBloomFilter(0.01);
+        assertTrue(test.contains(yellow, 2004, CharBuffer.wrap("ball 4")));
+        assertFalse(test.contains(yellow, 2004, "missing"));
+        assertEquals(1, filter.getHits());
+
+        CharSequence[] descriptions = new CharSequence[1000];
+        for (int i = 0; i < descriptions.length; i++) {
+            descriptions[i] = CharBuffer.wrap("ball " + i);
+        }
+        int found = 0;
+        for (int i = 0; i < descriptions.length; i++) {
+            found += test.contains(yellow, 2000 + i % 10, descriptions[i]) ? 1 : 0;
+        }
+        assertEquals(500, found);
+    }
+
     @Test
     @DisplayName("Test CollectionManager toString")
     public void testCollectionManagerToString() throws FileNotFoundException {
@@ -169,6 +350,38 @@ public class Testing {
         assertEquals(expected, actual);
     }
 
+    @Test
+    @DisplayName("Test writeSorted")
+    public void testWriteSorted() throws IOException {
+        CollectionManager test = new CollectionManager(new Scanner(new File("medium.txt")));
+        StringBuilder output = new StringBuilder();
+        test.writeSorted(output);
+        assertEquals(test.toString(), output.toString());
+        assertThrows(IllegalArgumentException.class, () -> {
+            test.writeSorted(null);
+        });
+    }
+
+    @Test
+    @DisplayName("Test iterator")
+    public void testIterator() {
+        CollectionManager test = new CollectionManager();
+        for (int year = 2000; year > 1000; year--) {
+            test.add(new GolfBall("green", year, "range ball"));
+        }
+        Iterator<GolfBall> iterator = test.iterator();
+        for (int year = 1001; year <= 2000; year++) {
+            assertTrue(iterator.hasNext());
+            assertEquals(new GolfBall("green", year, "range ball"), iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, () -> {
+            iterator.next();
+        });
+        assertEquals(1000, test.spliterator().getExactSizeIfKnown());
+        assertFalse(new CollectionManager().iterator().hasNext());
+    }
+
     @Test
     @DisplayName("Test save")
     public void testSave() throws FileNotFoundException {
@@ -185,6 +398,159 @@ public class Testing {
         });
     }
 
+    @Test
+    @DisplayName("Test saveSnapshot and loadSnapshot")
+    public void testSnapshot() throws IOException {
+        CollectionManager test1 = new CollectionManager(new Scanner(new File("large.txt")));
+        test1.add(new GolfBall("black", -12, "n\u00e9gatif"));
+        Path snapshot = Files.createTempFile("collection", ".bin");
+        try {
+            test1.saveSnapshot(snapshot);
+            CollectionManager test2 = new CollectionManager();
+            test2.loadSnapshot(snapshot);
+            assertEquals(test1.toString(), test2.toString());
+
+            byte[] bytes = Files.readAllBytes(snapshot);
+            bytes[bytes.length - 1] ^= 1;
+            Files.write(snapshot, bytes);
+            assertThrows(IOException.class, () -> {
+                new CollectionManager().loadSnapshot(snapshot);
+            });
+
+            // Corrupt counts and lengths are rejected before anything is allocated
+            byte[][] corrupt = {
+                {0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0, 0, 0, 0},
+                {0, 0, 0, 1, 0, 0, 0, 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+                 0x0f, 0, 0},
+                {0, 0, 0, 1, 0, 0, 0, 1, 1, 'a', 3, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+                 (byte) 0xff, 0x0f}
+            };
+            for (byte[] fields : corrupt) {
+                ByteBuffer file = ByteBuffer.allocate(8 + fields.length + 4);
+                file.putInt(0x47424C53).putInt(1).put(fields, 0, 8).putInt(0)
+                    .put(fields, 8, fields.length - 8);
+                Files.write(snapshot, file.array());
+                IOException e = assertThrows(IOException.class, () -> {
+                    new CollectionManager().loadSnapshot(snapshot);
+                });
+                assertTrue(e.getMessage().contains("corrupt")
+                           || e.getMessage().contains("missing description"));
+            }
+
+            // A save that fails part way leaves the previous snapshot in place
+            test1.saveSnapshot(snapshot);
+            int[] passes = {0};
+            Iterable<GolfBall> failing = () -> {
+                passes[0]++;
+                if (passes[0] > 1) {
+                    throw new IllegalStateException("failed while saving");
+                }
+                return test1.page(0, 3).iterator();
+            };
+            assertThrows(IllegalStateException.class, () -> {
+                GolfBallSnapshot.write(snapshot, failing);
+            });
+            CollectionManager test3 = new CollectionManager();
+            test3.loadSnapshot(snapshot);
+            assertEquals(test1.toString(), test3.toString());
+            assertFalse(Files.exists(snapshot.resolveSibling(snapshot.getFileName() + ".tmp")));
+        } finally {
+            Files.delete(snapshot);
+        }
+        assertThrows(IllegalArgumentException.class, () -> {
+            test1.saveSnapshot(null);
+        });
+    }
+
+    @Test
+    @DisplayName("Test size, rank, select, and page")
+    public void testOrderStatistics() {
+        CollectionManager test = new CollectionManager();
+        assertEquals(0, test.size());
+        for (int year = 1999; year >= 0; year--) {
+            test.add(new GolfBall("yellow", year, "range ball"));
+        }
+        test.add(new GolfBall("yellow", 5, "range ball"));
+        assertEquals(2000, test.size());
+        assertEquals(1234, test.rank(new GolfBall("yellow", 1234, "range ball")));
+        assertEquals(1235, test.rank(new GolfBall("yellow", 1234, "zzz")));
+        assertEquals(0, test.rank(new GolfBall("white", 5000, "range ball")));
+        assertEquals(new GolfBall("yellow", 1234, "range ball"), test.select(1234));
+        List<GolfBall> page = test.page(1995, 10);
+        assertEquals(5, page.size());
+        assertEquals(new GolfBall("yellow", 1995, "range ball"), page.get(0));
+        assertEquals(new GolfBall("yellow", 1999, "range ball"), page.get(4));
+        assertEquals(3, test.page(10, 3).size());
+        assertEquals(new GolfBall("yellow", 10, "range ball"), test.page(10, 3).get(0));
+        assertTrue(test.page(2000, 10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> {
+            test.select(2000);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            test.page(-1, 10);
+        });
+    }
+
+    @Test
+    @DisplayName("Test floor, ceiling, lower, and higher")
+    public void testNearest() {
+        CollectionManager test = new CollectionManager();
+        GolfBall red = new GolfBall("red", 2016, "country flags");
+        GolfBall blue = new GolfBall("blue", 2018, "half blue half white");
+        test.add(red);
+        test.add(blue);
+        GolfBall between = new GolfBall("yellow", 2018, "Spongebob golf ball");
+        assertEquals(red, test.floor(between));
+        assertEquals(blue, test.ceiling(between));
+        assertEquals(red, test.floor(red));
+        assertEquals(red, test.ceiling(red));
+        assertNull(test.lower(red));
+        assertEquals(blue, test.higher(red));
+        assertNull(test.higher(blue));
+        assertThrows(IllegalArgumentException.class, () -> {
+            test.floor(null);
+        });
+    }
+
+    @Test
+    @DisplayName("Test subSet, headSet, tailSet, and range")
+    public void testRangeViews() {
+        CollectionManager test = new CollectionManager();
+        for (int year = 2010; year < 2025; year++) {
+            test.add(new GolfBall("blue", year, "blue ball"));
+            test.add(new GolfBall("orange", year, "orange ball"));
+        }
+        SortedSet<GolfBall> blue = test.range("BLUE", 2015, 2019);
+        assertEquals(5, blue.size());
+        assertEquals(new GolfBall("blue", 2015, "blue ball"), blue.first());
+        assertEquals(new GolfBall("blue", 2019, "blue ball"), blue.last());
+        assertTrue(blue.contains(new GolfBall("blue", 2017, "blue ball")));
+        assertFalse(blue.contains(new GolfBall("blue", 2020, "blue ball")));
+        assertEquals(15, test.range("blue", Integer.MIN_VALUE, Integer.MAX_VALUE).size());
+        assertTrue(test.range("pink", 2010, 2020).isEmpty());
+
+        GolfBall firstBlue = new GolfBall("blue", 2010, "blue ball");
+        assertEquals(15, test.headSet(firstBlue, false).size());
+        assertEquals(16, test.headSet(firstBlue, true).size());
+        assertEquals(15, test.tailSet(firstBlue, true).size());
+        assertEquals(firstBlue, test.tailSet(firstBlue, true).first());
+        SortedSet<GolfBall> middle = test.subSet(new GolfBall("red", 0, ""), false,
+                                                 new GolfBall("blue", 2012, "blue ball"), true);
+        assertEquals(18, middle.size());
+        assertEquals(3, middle.tailSet(new GolfBall("blue", 2010, "")).size());
+        assertEquals(2, middle.subSet(new GolfBall("blue", 2010, ""),
+                                      new GolfBall("blue", 2012, "blue ball")).size());
+
+        test.add(new GolfBall("blue", 2016, "another blue ball"));
+        assertEquals(6, blue.size());
+        assertThrows(UnsupportedOperationException.class, () -> {
+            blue.add(new GolfBall("blue", 2016, "x"));
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            test.range("turquoise", 2015, 2019);
+        });
+    }
+
     @Test
     @DisplayName("Test filter")
     public void testFilter() throws FileNotFoundException {
@@ -196,4 +562,884 @@ public class Testing {
         assertEquals(expected, test.filter("pink"));
         assertEquals(new ArrayList<GolfBall>(), test.filter("orange"));
     }
+
+    @Test
+    @DisplayName("Test remove, removeIf, and replace")
+    public void testRemove() throws IOException {
+        CollectionManager test = new CollectionManager();
+        CollectionMetrics metrics = test.enableMetrics();
+        TreeSet<GolfBall> expected = new TreeSet<>();
+        for (int i = 0; i < 4096; i++) {
+            GolfBall golfBall = new GolfBall(i % 3 == 0 ? "red" : "blue", 2000 + i % 20,
+                                             "ball " + i);
+            test.add(golfBall);
+            expected.add(golfBall);
+        }
+        CollectionManager before = test.snapshot();
+        Random random = new Random(42);
+        List<GolfBall> order = new ArrayList<>(expected);
+        Collections.shuffle(order, random);
+        for (GolfBall golfBall : order.subList(0, 3000)) {
+            assertTrue(test.remove(golfBall));
+            assertFalse(test.remove(golfBall));
+            expected.remove(golfBall);
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(test.page(0, test.size())));
+        assertEquals(4096, before.size());
+        // An AVL tree of 1096 nodes is at most 1.44 * log2(1096) tall
+        assertTrue(metrics.getHeight() <= 14);
+        assertThrows(IllegalArgumentException.class, () -> test.remove(null));
+        assertThrows(UnsupportedOperationException.class, () -> before.remove(order.get(0)));
+
+        GolfBall kept = expected.first();
+        GolfBall corrected = new GolfBall("red", 2001, "corrected ball");
+        assertTrue(test.replace(kept, corrected));
+        assertFalse(test.contains(kept));
+        assertTrue(test.contains(corrected));
+        assertFalse(test.replace(kept, corrected));
+        assertEquals(expected.size(), test.size());
+        GolfBall other = expected.last();
+        assertFalse(test.replace(other, corrected));
+        assertTrue(test.contains(other));
+        assertTrue(test.replace(corrected, corrected));
+        assertFalse(test.replace(kept, kept));
+        assertEquals(expected.size(), test.size());
+
+        assertFalse(test.removeIf(golfBall -> golfBall.getYear() > 3000));
+        assertTrue(test.removeIf(golfBall -> golfBall.getColor().equals("blue")));
+        assertEquals(List.of(), test.filter("blue"));
+        assertTrue(test.filter("red").contains(corrected));
+        assertEquals(test.filter("red").size(), test.size());
+
+        StringWriter output = new StringWriter();
+        new BatchRunner(test, output).run(new BufferedReader(new StringReader(
+                "remove red 2001 corrected ball\nremove red 2001 corrected ball\n")));
+        assertEquals("true\nfalse\n", output.toString());
+    }
+
+    @Test
+    @DisplayName("Test union, intersect, difference, and diff")
+    public void testSetOperations() throws IOException {
+        CollectionManager first = new CollectionManager();
+        CollectionManager second = new CollectionManager();
+        TreeSet<GolfBall> firstSet = new TreeSet<>();
+        TreeSet<GolfBall> secondSet = new TreeSet<>();
+        for (int i = 0; i < 3000; i++) {
+            GolfBall golfBall = new GolfBall(i % 2 == 0 ? "green" : "white", 1990 + i % 25,
+                                             "ball " + i);
+            if (i % 3 != 0) {
+                first.add(golfBall);
+                firstSet.add(golfBall);
+            }
+            if (i % 5 != 0) {
+                second.add(golfBall);
+                secondSet.add(golfBall);
+            }
+        }
+        TreeSet<GolfBall> union = new TreeSet<>(firstSet);
+        union.addAll(secondSet);
+        TreeSet<GolfBall> intersection = new TreeSet<>(firstSet);
+        intersection.retainAll(secondSet);
+        TreeSet<GolfBall> onlyFirst = new TreeSet<>(firstSet);
+        onlyFirst.removeAll(secondSet);
+        TreeSet<GolfBall> onlySecond = new TreeSet<>(secondSet);
+        onlySecond.removeAll(firstSet);
+
+        assertEquals(new ArrayList<>(union), first.union(second).stream().toList());
+        assertEquals(new ArrayList<>(intersection),
+                     first.intersect(second.snapshot()).stream().toList());
+        assertEquals(new ArrayList<>(onlyFirst), first.difference(second).stream().toList());
+        assertEquals(0, first.difference(first).size());
+        assertEquals(first.toString(), first.union(new CollectionManager()).toString());
+        assertThrows(IllegalArgumentException.class, () -> first.union(null));
+
+        CollectionDiff diff = first.diff(second);
+        assertEquals(new ArrayList<>(onlySecond), diff.getAdded());
+        assertEquals(new ArrayList<>(onlyFirst), diff.getMissing());
+        assertFalse(diff.isEmpty());
+        assertTrue(first.diff(first.copy()).isEmpty());
+
+        Path before = Files.createTempFile("before", ".bin");
+        Path after = Files.createTempFile("after", ".bin");
+        try {
+            first.saveSnapshot(before);
+            second.saveSnapshot(after);
+            List<GolfBall> added = new ArrayList<>();
+            List<GolfBall> missing = new ArrayList<>();
+            assertEquals(onlyFirst.size() + onlySecond.size(),
+                         CollectionDiff.compare(before, after, added::add, missing::add));
+            assertEquals(diff.getAdded(), added);
+            assertEquals(diff.getMissing(), missing);
+        } finally {
+            Files.delete(before);
+            Files.delete(after);
+        }
+    }
+
+    @Test
+    @DisplayName("Test copy and snapshot")
+    public void testSnapshotViews() throws Exception {
+        CollectionManager test = new CollectionManager(new Scanner(new File("small.txt")));
+        String before = test.toString();
+        CollectionManager snapshot = test.snapshot();
+        CollectionManager copy = test.copy();
+        test.add(new GolfBall("blue", 2020, "added after snapshot"));
+        copy.add(new GolfBall("pink", 2020, "added to copy"));
+        assertEquals(before, snapshot.toString());
+        assertEquals(6, test.size());
+        assertEquals(6, copy.size());
+        assertFalse(test.contains(new GolfBall("pink", 2020, "added to copy")));
+        assertTrue(snapshot.isReadOnly());
+        assertFalse(copy.isReadOnly());
+        assertSame(snapshot, snapshot.snapshot());
+        assertThrows(UnsupportedOperationException.class, () -> {
+            snapshot.add(new GolfBall("blue", 2020, "x"));
+        });
+        assertThrows(UnsupportedOperationException.class, () -> {
+            snapshot.addAll(new ArrayList<>());
+        });
+
+        ConcurrentCollectionManager shared = new ConcurrentCollectionManager(test);
+        CollectionManager frozen = shared.snapshot();
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        Thread writer = new Thread(() -> {
+            for (int year = 0; year < 5000; year++) {
+                shared.add(new GolfBall("red", year, "written during save"));
+            }
+        });
+        writer.start();
+        frozen.save(new PrintStream(saved));
+        writer.join();
+        CollectionManager loaded = new CollectionManager(new Scanner(saved.toString()));
+        assertEquals(test.toString(), loaded.toString());
+        assertEquals(5006, shared.size());
+    }
+
+    @Test
+    @DisplayName("Test CollectionJournal")
+    public void testCollectionJournal() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        Path snapshot = directory.resolve("collection.bin");
+        Path journalFile = directory.resolve("collection.journal");
+        try {
+            CollectionJournal journal = new CollectionJournal(snapshot, journalFile);
+            journal.add(new GolfBall("white", 2016, "WJGA State Championship"));
+            journal.add(new GolfBall("white", 2016, "WJGA State Championship"));
+            journal.add(new GolfBall("red", 2016, "country flags"));
+            long oneRecord = journal.journalSize() / 2;
+            journal.close();
+
+            journal = new CollectionJournal(snapshot, journalFile);
+            assertEquals(2, journal.size());
+            journal.compact().get();
+            assertTrue(Files.exists(snapshot));
+            assertEquals(0, journal.journalSize());
+            journal.add(new GolfBall("blue", 2018, "half blue half white"));
+            assertTrue(journal.journalSize() > 0);
+            journal.close();
+
+            Files.write(journalFile, new byte[] {0, 0, 0, 40, 1}, StandardOpenOption.APPEND);
+            journal = new CollectionJournal(snapshot, journalFile);
+            assertEquals(3, journal.size());
+            assertTrue(journal.contains(new GolfBall("blue", 2018, "half blue half white")));
+            assertTrue(journal.contains(new GolfBall("red", 2016, "country flags")));
+            assertTrue(journal.journalSize() > 0 && journal.journalSize() < 2 * oneRecord);
+            journal.close();
+        } finally {
+            for (Path file : Files.list(directory).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("Test CompactCollectionManager")
+    public void testCompactCollectionManager() throws Exception {
+        CollectionManager expected = new CollectionManager(new Scanner(new File("large.txt")));
+        CompactCollectionManager bulk = new CompactCollectionManager();
+        bulk.addAll(new ArrayList<>(expected.page(0, expected.size())));
+        CompactCollectionManager test = new CompactCollectionManager();
+        Random random = new Random(14);
+        List<GolfBall> shuffled = new ArrayList<>(expected.page(0, expected.size()));
+        Collections.shuffle(shuffled, random);
+        for (GolfBall golfBall : shuffled) {
+            assertTrue(test.add(golfBall));
+        }
+        assertFalse(test.add(shuffled.get(0)));
+        assertEquals(expected.toString(), test.toString());
+        assertEquals(expected.toString(), bulk.toString());
+        assertEquals(expected.size(), test.size());
+        for (String color : new String[] {"red", "blue", "white", "purple", "gold"}) {
+            assertEquals(expected.filter(color), test.filter(color));
+        }
+        for (GolfBall golfBall : shuffled) {
+            assertTrue(test.contains(golfBall));
+            assertFalse(test.contains(new GolfBall(golfBall.getColor(), golfBall.getYear(),
+                                                   golfBall.getDescription() + "!")));
+        }
+
+        CompactCollectionManager repeated = new CompactCollectionManager();
+        for (int year = 0; year < 10000; year++) {
+            repeated.add(new GolfBall("green", year, "same description"));
+        }
+        assertEquals(1, repeated.descriptionCount());
+        assertTrue(repeated.memoryBytes() < 40 * 10000);
+
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        test.save(new PrintStream(saved));
+        assertEquals(expected.toString(),
+                     new CollectionManager(new Scanner(saved.toString())).toString());
+        Path snapshot = Files.createTempFile("compact", ".bin");
+        try {
+            test.saveSnapshot(snapshot);
+            CompactCollectionManager loaded = new CompactCollectionManager();
+            loaded.loadSnapshot(snapshot);
+            assertEquals(expected.toString(), loaded.toString());
+
+            // A corrupt snapshot leaves the collection as it was
+            CompactCollectionManager small = new CompactCollectionManager();
+            for (int year = 0; year < 10; year++) {
+                small.add(new GolfBall("red", 2000 + year, "ball " + year));
+            }
+            small.saveSnapshot(snapshot);
+            byte[] bytes = Files.readAllBytes(snapshot);
+            bytes[bytes.length - 1] ^= 1;
+            Files.write(snapshot, bytes);
+            CompactCollectionManager target = new CompactCollectionManager();
+            GolfBall kept = new GolfBall("blue", 1999, "kept");
+            target.add(kept);
+            assertThrows(IOException.class, () -> {
+                target.loadSnapshot(snapshot);
+            });
+            assertEquals(1, target.size());
+            assertEquals(1, target.descriptionCount());
+            assertEquals(kept + "\n", target.toString());
+            assertTrue(target.add(new GolfBall("red", 2003, "ball 3")));
+            assertEquals(2, target.descriptionCount());
+            assertTrue(target.contains(kept));
+
+            // Unsorted snapshots are sorted, and snapshots merge with existing contents
+            GolfBall red = new GolfBall("red", 2005, "x");
+            GolfBallSnapshot.write(snapshot, List.of(red, kept, new GolfBall("white", 1, "y"),
+                                                     red, new GolfBall("black", 3, "z")));
+            target.loadSnapshot(snapshot);
+            assertEquals(5, target.size());
+            assertTrue(target.contains(red));
+            List<GolfBall> sorted = new ArrayList<>();
+            target.forEach(sorted::add);
+            List<GolfBall> resorted = new ArrayList<>(sorted);
+            Collections.sort(resorted);
+            assertEquals(resorted, sorted);
+        } finally {
+            Files.delete(snapshot);
+        }
+
+        // Golf balls added in bulk are merged with the ones already there
+        CompactCollectionManager merged = new CompactCollectionManager();
+        CollectionManager mergedExpected = new CollectionManager();
+        for (int i = 0; i < shuffled.size() / 2; i++) {
+            merged.add(shuffled.get(i));
+            mergedExpected.add(shuffled.get(i));
+        }
+        List<GolfBall> rest = new ArrayList<>(shuffled.subList(shuffled.size() / 4,
+                                                               shuffled.size()));
+        merged.addAll(rest);
+        mergedExpected.addAll(rest);
+        assertEquals(mergedExpected.toString(), merged.toString());
+        assertEquals(expected.size(), merged.size());
+        for (GolfBall golfBall : shuffled) {
+            assertTrue(merged.contains(golfBall));
+        }
+        assertThrows(IllegalArgumentException.class, () -> {
+            test.add(null);
+        });
+    }
+
+    @Test
+    @DisplayName("Test DiskCollectionManager")
+    public void testDiskCollectionManager() throws Exception {
+        CollectionManager expected = new CollectionManager(new Scanner(new File("large.txt")));
+        List<GolfBall> golfBalls = new ArrayList<>(expected.page(0, expected.size()));
+        for (int year = 0; year < 20000; year++) {
+            golfBalls.add(new GolfBall(year % 2 == 0 ? "green" : "black", year,
+                                       "generated golf ball number " + year));
+        }
+        Collections.shuffle(golfBalls, new Random(15));
+        expected.addAll(golfBalls);
+        Path file = Files.createTempFile("collection", ".db");
+        Files.delete(file);
+        try {
+            try (DiskCollectionManager test = DiskCollectionManager.open(file)) {
+                // The file only grows as pages are allocated
+                assertTrue(Files.size(file) <= 16384);
+                for (GolfBall golfBall : golfBalls) {
+                    assertTrue(test.add(golfBall));
+                }
+                assertFalse(test.add(golfBalls.get(0)));
+                assertTrue(test.height() > 2);
+                assertThrows(IllegalArgumentException.class, () -> {
+                    test.add(new GolfBall("red", 2000, "x".repeat(
+                            DiskCollectionManager.MAX_DESCRIPTION_LENGTH + 1)));
+                });
+            }
+            try (DiskCollectionManager test = DiskCollectionManager.open(file)) {
+                assertEquals(expected.size(), test.size());
+                assertEquals(expected.toString(), test.toString());
+                for (String color : new String[] {"white", "green", "blue", "black", "gold"}) {
+                    assertEquals(expected.filter(color), test.filter(color));
+                }
+                for (GolfBall golfBall : golfBalls) {
+                    assertTrue(test.contains(golfBall));
+                    assertFalse(test.contains(new GolfBall(golfBall.getColor(),
+                            golfBall.getYear() + 1, golfBall.getDescription() + "?")));
+                }
+            }
+            long fileSize = Files.size(file);
+            file.toFile().setWritable(false);
+            try (DiskCollectionManager test = DiskCollectionManager.openReadOnly(file)) {
+                assertTrue(test.isReadOnly());
+                assertEquals(expected.toString(), test.toString());
+                assertTrue(test.contains(golfBalls.get(0)));
+                assertThrows(UnsupportedOperationException.class, () -> {
+                    test.add(new GolfBall("red", 1900, "not added"));
+                });
+            }
+            assertEquals(fileSize, Files.size(file));
+            file.toFile().setWritable(true);
+            Files.write(file, new byte[] {1, 2, 3}, StandardOpenOption.TRUNCATE_EXISTING);
+            assertThrows(IOException.class, () -> {
+                DiskCollectionManager.open(file);
+            });
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Test ParallelLoader")
+    public void testParallelLoader() throws Exception {
+        Path file = Files.createTempFile("parallel", ".txt");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            StringBuilder text = new StringBuilder();
+            Random random = new Random(16);
+            for (int i = 0; i < 200000; i++) {
+                text.append(GolfBall.getColorName(random.nextInt(GolfBall.getColorCount())))
+                    .append('\n').append(random.nextInt(60000)).append('\n')
+                    .append("parallel ").append(random.nextInt(100)).append('\n');
+            }
+            Files.writeString(file, text);
+            assertTrue(Files.size(file) > 4 << 20);
+            CollectionManager expected = new CollectionManager();
+            try (GolfBallReader reader = GolfBallReader.open(file)) {
+                expected.load(reader);
+            }
+            List<GolfBall> loaded = new ParallelLoader(pool).read(file);
+            assertEquals(expected.size(), loaded.size());
+            assertEquals(new ArrayList<>(expected.page(0, expected.size())), loaded);
+
+            CollectionManager test = new CollectionManager();
+            test.loadParallel(file);
+            assertEquals(expected.toString(), test.toString());
+
+            Files.writeString(file, "red\n2016\nflags\nblue\nsoon\nsky\n".repeat(2),
+                              StandardOpenOption.APPEND);
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> {
+                new ParallelLoader(pool).read(file);
+            });
+            assertTrue(e.getMessage().startsWith("Line 600005:"), e.getMessage());
+        } finally {
+            pool.shutdown();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Test stream and aggregation")
+    public void testStreamAndAggregation() throws FileNotFoundException {
+        CollectionManager test = new CollectionManager(new Scanner(new File("large.txt")));
+        Random random = new Random(17);
+        for (int i = 0; i < 50000; i++) {
+            test.add(new GolfBall(GolfBall.getColorName(random.nextInt(9)),
+                                  1900 + random.nextInt(125), "stream " + i));
+        }
+        List<GolfBall> all = new ArrayList<>();
+        test.forEach(all::add);
+
+        Spliterator<GolfBall> spliterator = test.spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT
+                                                  | Spliterator.SIZED));
+        assertEquals(test.size(), spliterator.getExactSizeIfKnown());
+        Spliterator<GolfBall> firstHalf = spliterator.trySplit();
+        assertEquals(test.size(), firstHalf.estimateSize() + spliterator.estimateSize());
+        assertEquals(all, test.stream().parallel().toList());
+        assertEquals(test.size(), test.stream().parallel().count());
+
+        Map<String, Integer> byColor = new LinkedHashMap<>();
+        Map<Integer, Integer> byYear = new TreeMap<>();
+        for (GolfBall golfBall : all) {
+            byColor.merge(golfBall.getColor(), 1, Integer::sum);
+            byYear.merge(golfBall.getYear(), 1, Integer::sum);
+        }
+        assertEquals(byColor, test.countByColor());
+        assertEquals(new ArrayList<>(byColor.keySet()),
+                     new ArrayList<>(test.countByColor().keySet()));
+        assertEquals(byYear, test.countByYear());
+        for (String color : byColor.keySet()) {
+            List<GolfBall> ofColor = test.filter(color);
+            assertEquals(ofColor.get(0).getYear(), test.minYear(color));
+            assertEquals(ofColor.get(ofColor.size() - 1).getYear(), test.maxYear(color));
+        }
+        CollectionManager small = new CollectionManager(new Scanner(new File("small.txt")));
+        assertNull(small.minYear("blue"));
+        assertNull(small.maxYear("blue"));
+        assertEquals(2016, small.maxYear("black"));
+        assertNull(new CollectionManager().maxYear("white"));
+        assertThrows(IllegalArgumentException.class, () -> {
+            test.minYear("turquoise");
+        });
+    }
+
+    @Test
+    @DisplayName("Test BatchRunner")
+    public void testBatchRunner() throws Exception {
+        Path saved = Files.createTempFile("batch", ".bin");
+        try {
+            String script = "# build a small collection\n"
+                          + "add white 2016 WJGA State Championship\n"
+                          + "add red 2016 country flags\n"
+                          + "add turquoise 2016 bad color\n"
+                          + "add red 2016 country flags\n"
+                          + "\n"
+                          + "contains red 2016 country flags\n"
+                          + "contains red 2017 country flags\n"
+                          + "add black 2016 black and white soccer ball\n"
+                          + "filter red\n"
+                          + "size\n"
+                          + "save " + saved + "\n"
+                          + "bogus\n";
+            StringWriter output = new StringWriter();
+            CollectionManager test = new CollectionManager();
+            int errors = new BatchRunner(test, output).run(
+                    new BufferedReader(new StringReader(script)));
+            assertEquals(2, errors);
+            assertEquals("error: line 4: Invalid color: turquoise is not present in COLORS\n"
+                         + "true\n"
+                         + "false\n"
+                         + "country flags | Color: red | Year Obtained: 2016\n"
+                         + "3\n"
+                         + "error: line 13: unknown command \"bogus\"\n", output.toString());
+
+            CollectionManager loaded = new CollectionManager();
+            output = new StringWriter();
+            assertEquals(0, new BatchRunner(loaded, output).run(new BufferedReader(
+                    new StringReader("load " + saved + "\nprint\n"))));
+            assertEquals(test.toString(), output.toString());
+
+            // A text save that fails part way is reported as an error
+            Path full = Paths.get("/dev/full");
+            if (Files.isWritable(full)) {
+                output = new StringWriter();
+                assertEquals(1, new BatchRunner(test, output).run(new BufferedReader(
+                        new StringReader("save " + full + "\n"))));
+                assertEquals("error: line 1: could not write /dev/full\n", output.toString());
+            }
+        } finally {
+            Files.delete(saved);
+        }
+    }
+
+    @Test
+    @DisplayName("Test CollectionServer")
+    public void testCollectionServer() throws Exception {
+        Path saves = Files.createTempDirectory("server");
+        Path saved = saves.resolve("saved.bin");
+        ConcurrentCollectionManager shared = new ConcurrentCollectionManager();
+        try (CollectionServer server = new CollectionServer(shared, 0, saves)) {
+            server.start();
+            try (java.net.Socket socket = new java.net.Socket(
+                         java.net.InetAddress.getLoopbackAddress(), server.getPort());
+                 BufferedReader input = new BufferedReader(new InputStreamReader(
+                         socket.getInputStream(), StandardCharsets.UTF_8));
+                 PrintWriter output = new PrintWriter(new OutputStreamWriter(
+                         socket.getOutputStream(), StandardCharsets.UTF_8))) {
+                output.print("add red 2016 country flags\n"
+                             + "add red 2010 old logo\n"
+                             + "add turquoise 2016 bad color\n"
+                             + "contains red 2016 country flags\n"
+                             + "range red 2009 2012\n"
+                             + "filter red\n"
+                             + "size\n"
+                             + "save saved.bin\n"
+                             + "save ../escaped.txt\n"
+                             + "save " + saves.resolve("absolute.txt") + "\n"
+                             + "bogus\n");
+                output.flush();
+                String[] expected = {
+                    "OK 0",
+                    "OK 0",
+                    "ERROR Invalid color: turquoise is not present in COLORS",
+                    "OK 1", "true",
+                    "OK 1", "old logo | Color: red | Year Obtained: 2010",
+                    "OK 2", "old logo | Color: red | Year Obtained: 2010",
+                    "country flags | Color: red | Year Obtained: 2016",
+                    "OK 1", "2",
+                    "OK 0",
+                    "ERROR save expects a plain file name",
+                    "ERROR save expects a plain file name",
+                    "ERROR unknown command \"bogus\""
+                };
+                for (String line : expected) {
+                    assertEquals(line, input.readLine());
+                }
+            }
+            CollectionManager loaded = new CollectionManager();
+            loaded.loadSnapshot(saved);
+            assertEquals(shared.toString(), loaded.toString());
+            assertFalse(Files.exists(saves.resolveSibling("escaped.txt")));
+            assertFalse(Files.exists(saves.resolve("absolute.txt")));
+        } finally {
+            Files.delete(saved);
+            Files.delete(saves);
+        }
+    }
+
+    @Test
+    @DisplayName("Test GolfBallBloomFilter")
+    public void testBloomFilter() {
+        List<GolfBall> present = new ArrayList<>();
+        List<GolfBall> absent = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            String color = i % 2 == 0 ? "red" : "blue";
+            present.add(new GolfBall(color, 1990 + i % 30, "ball " + i));
+            absent.add(new GolfBall(color, 1990 + i % 30, "missing " + i));
+        }
+        CollectionManager test = new CollectionManager();
+        test.addAll(present.subList(0, 5000));
+        assertNull(test.getBloomFilter());
+        GolfBallBloomFilter filter = test.enableBloomFilter(0.01);
+        assertSame(filter, test.getBloomFilter());
+        assertThrows(IllegalArgumentException.class, () -> test.enableBloomFilter(0));
+        assertThrows(IllegalArgumentException.class, () -> test.enableBloomFilter(1));
+
+        // Adding one at a time past the filter's capacity rebuilds it, keeping counters
+        for (GolfBall golfBall : present.subList(5000, 20000)) {
+            test.add(golfBall);
+        }
+        for (GolfBall golfBall : present) {
+            assertTrue(test.contains(golfBall));
+        }
+        for (GolfBall golfBall : absent) {
+            assertFalse(test.contains(golfBall));
+        }
+        GolfBallBloomFilter rebuilt = test.getBloomFilter();
+        assertNotSame(filter, rebuilt);
+        assertTrue(rebuilt.getCapacity() >= test.size());
+        assertEquals(20000, rebuilt.getHits());
+        assertEquals(20000, rebuilt.getDefiniteMisses() + rebuilt.getFalsePositives());
+        assertTrue(rebuilt.getObservedFalsePositiveRate() < 0.03);
+
+        // Golf balls whose years and descriptions offset each other share a hash code,
+        // but not the filter's bits
+        GolfBallBloomFilter fields = new GolfBallBloomFilter(1000, 0.01);
+        int collisions = 0;
+        for (int year = 0; year < 1000; year++) {
+            GolfBall added = new GolfBall("white", 2000 + year, "a");
+            GolfBall probe = new GolfBall("white", 1999 + year, "b");
+            assertEquals(added.hashCode(), probe.hashCode());
+            fields.add(added);
+            collisions += fields.mightContain(probe) ? 1 : 0;
+        }
+        assertTrue(collisions < 50);
+
+        // Copies share the filter, and a bulk add rebuilds it for the new tree
+        CollectionManager copy = test.copy();
+        assertSame(rebuilt, copy.getBloomFilter());
+        copy.addAll(absent);
+        assertNotSame(rebuilt, copy.getBloomFilter());
+        assertSame(rebuilt, test.getBloomFilter());
+        for (GolfBall golfBall : absent) {
+            assertTrue(copy.contains(golfBall));
+            assertFalse(test.contains(golfBall));
+        }
+
+        ConcurrentCollectionManager shared = new ConcurrentCollectionManager(test);
+        GolfBallBloomFilter sharedFilter = shared.enableBloomFilter(0.01);
+        shared.add(absent.get(0));
+        assertTrue(shared.contains(absent.get(0)));
+        assertFalse(shared.contains(absent.get(1)));
+        assertEquals(1, sharedFilter.getHits());
+    }
+
+    @Test
+    @DisplayName("Test QueryCache")
+    public void testQueryCache() {
+        CollectionManager test = new CollectionManager();
+        test.add(new GolfBall("red", 2016, "country flags"));
+        test.add(new GolfBall("red", 2010, "old logo"));
+        test.add(new GolfBall("blue", 2012, "ocean"));
+        assertNull(test.getQueryCache());
+        assertNotSame(test.filter("red"), test.filter("red"));
+        assertThrows(IllegalArgumentException.class, () -> test.enableQueryCache(0));
+        QueryCache cache = test.enableQueryCache(2);
+
+        List<GolfBall> red = test.filter("red");
+        assertEquals(2, red.size());
+        assertSame(red, test.filter("red"));
+        assertThrows(UnsupportedOperationException.class, () -> red.remove(0));
+        List<GolfBall> oldRed = test.filter("red", 2000, 2012);
+        assertEquals(List.of(new GolfBall("red", 2010, "old logo")), oldRed);
+        assertSame(oldRed, test.filter("red", 2000, 2012));
+        assertThrows(IllegalArgumentException.class, () -> test.filter("turquoise", 1, 2));
+
+        // Adding a golf ball of another color, or one already present, keeps red's results
+        test.add(new GolfBall("blue", 2020, "sky"));
+        test.add(new GolfBall("red", 2016, "country flags"));
+        assertSame(red, test.filter("red"));
+        test.add(new GolfBall("red", 2011, "new logo"));
+        List<GolfBall> newRed = test.filter("red");
+        assertNotSame(red, newRed);
+        assertEquals(3, newRed.size());
+        assertEquals(2, test.filter("red", 2000, 2012).size());
+
+        // A copy shares the cached results, but its changes are not seen by the original.
+        // The two share the cache's limit, so the original's result may be evicted.
+        CollectionManager copy = test.copy();
+        assertSame(newRed, copy.filter("red"));
+        copy.addAll(List.of(new GolfBall("red", 1999, "first ball")));
+        assertEquals(4, copy.filter("red").size());
+        assertEquals(newRed, test.filter("red"));
+        assertSame(test.filter("red"), test.filter("red"));
+
+        // Only the two most recently used results are kept
+        test.filter("blue");
+        test.filter("white");
+        assertEquals(2, cache.size());
+        assertNotSame(newRed, test.filter("red"));
+        assertTrue(cache.getHits() > 0);
+        assertTrue(cache.getInvalidations() > 0);
+
+        ConcurrentCollectionManager shared = new ConcurrentCollectionManager(test);
+        shared.enableQueryCache(8);
+        List<GolfBall> sharedRed = shared.filter("red");
+        assertSame(sharedRed, shared.filter("red"));
+        shared.add(new GolfBall("blue", 2021, "lake"));
+        assertSame(sharedRed, shared.filter("red"));
+        shared.add(new GolfBall("red", 2021, "flag"));
+        assertEquals(sharedRed.size() + 1, shared.filter("red").size());
+    }
+
+    @Test
+    @DisplayName("Test CollectionWatcher")
+    public void testCollectionWatcher() throws Exception {
+        Path directory = Files.createTempDirectory("watch");
+        Path data = directory.resolve("data.txt");
+        Path saved = directory.resolve("data.bin");
+        GolfBall extra = new GolfBall("black", 2020, "added by a client");
+        ConcurrentCollectionManager shared = new ConcurrentCollectionManager();
+        shared.add(extra);
+        try (CollectionWatcher watcher = new CollectionWatcher(shared, data)) {
+            assertEquals(0, watcher.reload());
+            Files.writeString(data, "white\n2016\nclub ball\nred\n2017\nflag\n");
+            assertEquals(2, watcher.reload());
+            assertEquals(3, shared.size());
+            assertEquals(0, watcher.reload());
+
+            // Only complete records are applied; the rest waits for the next change
+            Files.writeString(data, "blue\n2018\nocean\ngreen\n2019\n",
+                              StandardOpenOption.APPEND);
+            assertEquals(1, watcher.reload());
+            assertTrue(shared.contains(new GolfBall("blue", 2018, "ocean")));
+            Files.writeString(data, "grass\n", StandardOpenOption.APPEND);
+            assertEquals(1, watcher.reload());
+            assertTrue(shared.contains(new GolfBall("green", 2019, "grass")));
+
+            Files.writeString(data, "pink\n20x9\nbad\n", StandardOpenOption.APPEND);
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                                                      watcher::reload);
+            assertTrue(e.getMessage().startsWith("Line 14:"));
+            assertEquals(5, shared.size());
+
+            // A rewritten file is diffed against what was read from it before
+            Files.writeString(data, "white\n2016\nclub ball\nyellow\n2020\nsun\n");
+            assertEquals(4, watcher.reload());
+            assertTrue(shared.contains(new GolfBall("yellow", 2020, "sun")));
+            assertFalse(shared.contains(new GolfBall("red", 2017, "flag")));
+            assertFalse(shared.contains(new GolfBall("blue", 2018, "ocean")));
+            assertTrue(shared.contains(extra));
+            assertEquals(3, shared.size());
+
+            // Appends larger than one read chunk are read in pieces
+            StringBuilder appended = new StringBuilder();
+            for (int i = 0; i < 5000; i++) {
+                appended.append("brown\n").append(1900 + i % 100).append("\nchunk ")
+                        .append(i).append('\n');
+            }
+            Files.writeString(data, appended + "brown\n", StandardOpenOption.APPEND);
+            assertEquals(5000, watcher.reload());
+            assertTrue(shared.contains(new GolfBall("brown", 1999, "chunk 4999")));
+            Files.writeString(data, "20x0\nbad\n", StandardOpenOption.APPEND);
+            e = assertThrows(IllegalArgumentException.class, watcher::reload);
+            assertTrue(e.getMessage().startsWith("Line 15008:"));
+            assertEquals(5003, shared.size());
+            Files.writeString(data, "white\n2016\nclub ball\nyellow\n2020\nsun\n");
+            assertEquals(5000, watcher.reload());
+            assertEquals(3, shared.size());
+
+            // An edit far before the end, keeping the size, is still seen as a rewrite
+            StringBuilder rewritten = new StringBuilder();
+            for (int i = 0; i < 500; i++) {
+                rewritten.append("brown\n").append(1900 + i % 100).append("\nedit ")
+                         .append(i % 10).append(i / 10 % 10).append(i / 100).append('\n');
+            }
+            Files.writeString(data, rewritten);
+            assertEquals(502, watcher.reload());
+            Files.writeString(data, "brown\n1900\ntidy " + rewritten.substring(16));
+            assertTrue(Files.size(data) - 16 > 4096);
+            assertEquals(2, watcher.reload());
+            assertFalse(shared.contains(new GolfBall("brown", 1900, "edit 000")));
+            assertTrue(shared.contains(new GolfBall("brown", 1900, "tidy 000")));
+            assertEquals(501, shared.size());
+            Files.writeString(data, "white\n2016\nclub ball\nyellow\n2020\nsun\n");
+            assertEquals(502, watcher.reload());
+
+            watcher.start();
+            assertThrows(IllegalStateException.class, watcher::start);
+            Files.writeString(data, "purple\n2021\ngrape\n", StandardOpenOption.APPEND);
+            GolfBall grape = new GolfBall("purple", 2021, "grape");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!shared.contains(grape) && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(shared.contains(grape));
+            assertNull(watcher.getLastError());
+        }
+
+        CollectionManager contents = new CollectionManager();
+        contents.add(new GolfBall("orange", 2001, "citrus"));
+        contents.saveSnapshot(saved);
+        ConcurrentCollectionManager fromSnapshot = new ConcurrentCollectionManager();
+        try (CollectionWatcher watcher = new CollectionWatcher(fromSnapshot, saved)) {
+            assertEquals(1, watcher.reload());
+            contents.add(new GolfBall("brown", 2002, "wood"));
+            contents.saveSnapshot(saved);
+            assertEquals(1, watcher.reload());
+            assertEquals(contents.toString(), fromSnapshot.toString());
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    @DisplayName("Test CollectionMetrics")
+    public void testCollectionMetrics() throws Exception {
+        CollectionManager test = new CollectionManager();
+        assertNull(test.getMetrics());
+        CollectionMetrics metrics = test.enableMetrics();
+        assertSame(metrics, test.enableMetrics());
+        for (int year = 0; year < 1023; year++) {
+            test.add(new GolfBall("green", year, "metrics"));
+        }
+        test.add(new GolfBall("green", 0, "metrics"));
+        assertTrue(test.contains(new GolfBall("green", 511, "metrics")));
+        assertFalse(test.contains(new GolfBall("red", 511, "metrics")));
+        test.filter("green");
+        test.save(new PrintStream(OutputStream.nullOutputStream()));
+
+        assertEquals(1024, metrics.getAddCount());
+        assertEquals(2, metrics.getContainsCount());
+        assertEquals(1, metrics.getFilterCount());
+        assertEquals(1, metrics.getSaveCount());
+        assertEquals(1023, metrics.getSize());
+        assertEquals(10, metrics.getHeight());
+        assertTrue(metrics.getAverageComparisonsPerLookup() >= 1);
+        assertTrue(metrics.getAverageComparisonsPerLookup() <= 10);
+        assertTrue(metrics.getAddLatencyP50Nanos() <= metrics.getAddLatencyP99Nanos());
+
+        CollectionManager copy = test.copy();
+        copy.contains(new GolfBall("green", 1, "metrics"));
+        assertEquals(3, metrics.getContainsCount());
+        assertEquals(3L, metrics.snapshot().get("containsCount"));
+        assertThrows(UnsupportedOperationException.class, () -> {
+            metrics.snapshot().put("size", 0);
+        });
+
+        metrics.register("testCollectionMetrics");
+        assertThrows(IllegalArgumentException.class, () -> {
+            metrics.register("testCollectionMetrics");
+        });
+        ObjectName name = new ObjectName(
+                "collection-manager:type=CollectionMetrics,name=\"testCollectionMetrics\"");
+        assertEquals(1023, ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(name, "Size"));
+        metrics.unregister();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+        // A write that fails is discarded, and so is the shape its copy recorded
+        ConcurrentCollectionManager shared = new ConcurrentCollectionManager(test);
+        CollectionMetrics sharedMetrics = shared.enableMetrics();
+        assertThrows(IllegalStateException.class, () -> shared.update(next -> {
+            next.add(new GolfBall("red", 2000, "discarded"));
+            throw new IllegalStateException();
+        }));
+        assertEquals(1023, shared.size());
+        assertEquals(1023, sharedMetrics.getSize());
+        shared.add(new GolfBall("red", 2000, "published"));
+        assertEquals(1024, sharedMetrics.getSize());
+        assertEquals(11, sharedMetrics.getHeight());
+    }
+
+    @Test
+    @DisplayName("Test ConcurrentCollectionManager under concurrent reads and writes")
+    public void testConcurrentCollectionManager() throws Exception {
+        ConcurrentCollectionManager test = new ConcurrentCollectionManager();
+        int writes = 20000;
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        int readers = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+        ExecutorService pool = Executors.newFixedThreadPool(readers + 1);
+        List<Future<?>> tasks = new ArrayList<>();
+        tasks.add(pool.submit(() -> {
+            for (int year = 0; year < writes; year++) {
+                test.add(new GolfBall("green", year, "stress"));
+                written.set(year + 1);
+            }
+        }));
+        for (int i = 0; i < readers; i++) {
+            tasks.add(pool.submit(() -> {
+                while (written.get() < writes) {
+                    int seen = written.get();
+                    if (seen > 0 && !test.contains(new GolfBall("green", seen - 1, "stress"))) {
+                        failures.incrementAndGet();
+                    }
+                    if (test.filter("green").size() < seen) {
+                        failures.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        pool.shutdown();
+        assertEquals(0, failures.get());
+        assertEquals(writes, test.size());
+        assertThrows(IllegalArgumentException.class, () -> {
+            test.add(null);
+        });
+
+        CollectionMetrics metrics = test.enableMetrics();
+        GolfBallBloomFilter filter = test.enableBloomFilter(0.01);
+        test.add(new GolfBall("green", 0, "stress"));
+        test.add(new GolfBall("green", writes, "stress"));
+        assertEquals(0, metrics.getContainsCount());
+        assertEquals(0, filter.getHits() + filter.getDefiniteMisses()
+                        + filter.getFalsePositives());
+        assertEquals(1, metrics.getAddCount());
+    }
 }